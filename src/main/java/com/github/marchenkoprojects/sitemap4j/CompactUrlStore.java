@@ -0,0 +1,234 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Compact columnar storage of sitemap URLs.
+ *
+ * <p> Instead of keeping a URL object per entry, every field is stored in its own primitive column:
+ * the locations as UTF-8 bytes in a single shared arena without the base site URL, the <tt>lastmod</tt> as an epoch value
+ * with a zone offset, the <tt>changefreq</tt> as a byte and the <tt>priority</tt> as a fixed-point short
+ * with four decimal places. URL objects are built on demand when they are requested from the store,
+ * so changing a returned URL does not change the stored one.
+ *
+ * <p> The insertion order is preserved. Removing single URLs is not supported.
+ *
+ * @author Oleg Marchenko
+ * @see LocArena
+ */
+class CompactUrlStore implements UrlStore {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int PRIORITY_SCALE = 10_000;
+    private static final short NO_PRIORITY = -1;
+
+    private final LocArena locs;
+
+    private byte[] lastmodKinds;
+    private long[] lastmodEpochs;
+    private int[] lastmodOffsets;
+    /**
+     * Nano-of-second of the <tt>lastmod</tt> values, allocated only when the first non-zero value is stored.
+     */
+    private int[] lastmodNanos;
+    private byte[] changefreqs;
+    private short[] priorities;
+    private int size;
+
+    /**
+     * Open addressing hash table of row numbers increased by one; zero marks an empty slot.
+     */
+    private int[] table;
+
+    CompactUrlStore(String baseUrl) {
+        this.locs = new LocArena(baseUrl);
+        reset();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(String loc) {
+        return nonNull(loc) && findRow(locs.toKey(loc)) >= 0;
+    }
+
+    @Override
+    public SitemapIndex.Url get(String loc) {
+        if (isNull(loc)) {
+            return null;
+        }
+        int row = findRow(locs.toKey(loc));
+        return row >= 0 ? buildUrl(row) : null;
+    }
+
+    @Override
+    public void put(SitemapIndex.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        byte[] loc = locs.toKey(url.getLoc());
+        int row = findRow(loc);
+        if (row < 0) {
+            row = appendRow(loc);
+        }
+        writeFields(row, url);
+    }
+
+    @Override
+    public SitemapIndex.Url replace(SitemapIndex.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        int row = findRow(locs.toKey(url.getLoc()));
+        if (row < 0) {
+            return null;
+        }
+        SitemapIndex.Url prevUrl = buildUrl(row);
+        writeFields(row, url);
+        return prevUrl;
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    @Override
+    public Iterator<SitemapIndex.Url> iterator() {
+        return new Iterator<SitemapIndex.Url>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public SitemapIndex.Url next() {
+                if (row >= size) {
+                    throw new NoSuchElementException();
+                }
+                return buildUrl(row++);
+            }
+        };
+    }
+
+    @Override
+    public void forEachLoc(Consumer<? super String> action) {
+        for (int row = 0; row < size; row++) {
+            action.accept(locs.get(row));
+        }
+    }
+
+    private void reset() {
+        locs.clear();
+        lastmodKinds = new byte[INITIAL_CAPACITY];
+        lastmodEpochs = new long[INITIAL_CAPACITY];
+        lastmodOffsets = new int[INITIAL_CAPACITY];
+        lastmodNanos = null;
+        changefreqs = new byte[INITIAL_CAPACITY];
+        priorities = new short[INITIAL_CAPACITY];
+        size = 0;
+        table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    private int findRow(byte[] loc) {
+        int hash = LocArena.hash(loc, loc.length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (locs.hash(row) == hash && locs.matches(row, loc)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private int appendRow(byte[] loc) {
+        if (size == lastmodKinds.length) {
+            growColumns();
+        }
+        int row = locs.append(loc, LocArena.hash(loc, loc.length));
+        size++;
+
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        else {
+            insertIntoTable(row);
+        }
+        return row;
+    }
+
+    private void growColumns() {
+        int capacity = lastmodKinds.length * 2;
+        lastmodKinds = Arrays.copyOf(lastmodKinds, capacity);
+        lastmodEpochs = Arrays.copyOf(lastmodEpochs, capacity);
+        lastmodOffsets = Arrays.copyOf(lastmodOffsets, capacity);
+        if (nonNull(lastmodNanos)) {
+            lastmodNanos = Arrays.copyOf(lastmodNanos, capacity);
+        }
+        changefreqs = Arrays.copyOf(changefreqs, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        for (int row = 0; row < size; row++) {
+            insertIntoTable(row);
+        }
+    }
+
+    private void insertIntoTable(int row) {
+        int mask = table.length - 1;
+        int slot = locs.hash(row) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = row + 1;
+    }
+
+    private void writeFields(int row, SitemapIndex.Url url) {
+        lastmodKinds[row] = LastmodCodec.kindOf(url.lastmod);
+        lastmodEpochs[row] = LastmodCodec.epochOf(url.lastmod);
+        lastmodOffsets[row] = LastmodCodec.offsetOf(url.lastmod);
+
+        int nano = LastmodCodec.nanoOf(url.lastmod);
+        if (nano != 0 && isNull(lastmodNanos)) {
+            lastmodNanos = new int[lastmodKinds.length];
+        }
+        if (nonNull(lastmodNanos)) {
+            lastmodNanos[row] = nano;
+        }
+
+        ChangeFreq changefreq = null;
+        Float priority = null;
+        if (url instanceof Sitemap.Url) {
+            changefreq = ((Sitemap.Url) url).getChangefreq();
+            priority = ((Sitemap.Url) url).getPriority();
+        }
+        changefreqs[row] = (byte) (nonNull(changefreq) ? changefreq.ordinal() + 1 : 0);
+        priorities[row] = nonNull(priority) ? (short) Math.round(priority * PRIORITY_SCALE) : NO_PRIORITY;
+    }
+
+    private Sitemap.Url buildUrl(int row) {
+        Sitemap.Url url = new Sitemap.Url(locs.get(row));
+        int nano = nonNull(lastmodNanos) ? lastmodNanos[row] : 0;
+        url.setLastmod(LastmodCodec.decode(lastmodKinds[row], lastmodEpochs[row], lastmodOffsets[row], nano));
+        if (changefreqs[row] != 0) {
+            url.setChangefreq(ChangeFreq.values()[changefreqs[row] - 1]);
+        }
+        if (priorities[row] != NO_PRIORITY) {
+            url.setPriority(priorities[row] / (float) PRIORITY_SCALE);
+        }
+        return url;
+    }
+}
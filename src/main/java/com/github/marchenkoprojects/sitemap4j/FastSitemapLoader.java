@@ -0,0 +1,533 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import com.github.marchenkoprojects.sitemap4j.Sitemap.Url;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Sitemap loader that scans the raw UTF-8 bytes of a file instead of driving an XML parser.
+ *
+ * <p> Only the fixed sitemap grammar is recognized: an optional XML declaration, the <tt>urlset</tt> root element
+ * and <tt>url</tt> elements with <tt>loc</tt>, <tt>lastmod</tt>, <tt>changefreq</tt> and <tt>priority</tt> children
+ * separated by whitespace. Text values may contain the predefined XML entities.
+ * Values are decoded straight from a reusable buffer, so a URL costs little more than its location string.
+ * A file that is mapped into memory is scanned straight from the mapping without copying;
+ * other files are read through a reusable buffer.
+ *
+ * <p> With parallel parsing, an uncompressed file of several megabytes is mapped into memory and split
+ * into chunks that end right after a <tt>url</tt> end tag. The chunks are parsed in parallel in the common
+ * fork/join pool and their URLs are put into the store in the original order.
+ *
+ * <p> Anything else, such as comments, CDATA sections, extension elements or another encoding,
+ * makes the loader discard the partial result and load the file with the XML parser.
+ *
+ * @author Oleg Marchenko
+ */
+class FastSitemapLoader extends SitemapLoader {
+
+    /**
+     * Minimal size of a chunk of a file parsed in parallel.
+     */
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final byte[] URL_END_TAG = "</url>".getBytes(UTF_8);
+
+    private final boolean parallelParsing;
+
+    FastSitemapLoader(boolean parallelParsing) {
+        this.parallelParsing = parallelParsing;
+    }
+
+    @Override
+    void load(File file, UrlStore urls) {
+        try {
+            long length = file.length();
+            if (parallelParsing && !file.getName().endsWith(".gz")
+                    && length >= 2L * MIN_CHUNK_SIZE && length <= Integer.MAX_VALUE) {
+                loadInChunks(file, urls);
+            }
+            else {
+                try (InputStream is = openInputStream(file)) {
+                    Parser parser = is instanceof MappedInputStream
+                            ? new Parser(((MappedInputStream) is).getBuffer())
+                            : new Parser(is);
+                    parser.parse(urls::put, true, true);
+                }
+            }
+            return;
+        }
+        catch (IOException e) {
+            throw new SitemapNotLoadedException(e);
+        }
+        catch (UnexpectedContentException e) {
+            urls.clear();
+        }
+        super.load(file, urls);
+    }
+
+    /**
+     * Splits the mapped file into chunks that end right after a <tt>url</tt> end tag,
+     * parses the chunks in parallel in the common fork/join pool and puts the URLs in the original order.
+     */
+    private void loadInChunks(File file, UrlStore urls) throws IOException {
+        ByteBuffer content = MappedFiles.mapReadOnly(file);
+        int chunkCount = Math.min(ForkJoinPool.getCommonPoolParallelism(), content.limit() / MIN_CHUNK_SIZE);
+        int[] bounds = splitOnUrlEnds(content, Math.max(chunkCount, 1));
+
+        List<List<Url>> chunks = IntStream.range(0, bounds.length - 1)
+                .parallel()
+                .mapToObj(chunk -> parseChunk(content, bounds, chunk))
+                .collect(Collectors.toList());
+        if (chunks.contains(null)) {
+            throw UnexpectedContentException.INSTANCE;
+        }
+        for (List<Url> chunk: chunks) {
+            chunk.forEach(urls::put);
+        }
+    }
+
+    private static int[] splitOnUrlEnds(ByteBuffer content, int chunkCount) {
+        int[] bounds = new int[chunkCount + 1];
+        int count = 1;
+        for (int chunk = 1; chunk < chunkCount; chunk++) {
+            int target = (int) ((long) content.limit() * chunk / chunkCount);
+            int end = indexOf(content, URL_END_TAG, Math.max(target, bounds[count - 1]));
+            if (end < 0) {
+                break;
+            }
+            bounds[count++] = end + URL_END_TAG.length;
+        }
+        bounds[count++] = content.limit();
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static int indexOf(ByteBuffer content, byte[] bytes, int from) {
+        int last = content.limit() - bytes.length;
+        for (int i = from; i <= last; i++) {
+            int matched = 0;
+            while (matched < bytes.length && content.get(i + matched) == bytes[matched]) {
+                matched++;
+            }
+            if (matched == bytes.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a single chunk of the mapped file.
+     *
+     * @return URLs of the chunk or <code>null</code> if the chunk contains unexpected content
+     */
+    private static List<Url> parseChunk(ByteBuffer content, int[] bounds, int chunk) {
+        ByteBuffer slice = content.duplicate();
+        slice.limit(bounds[chunk + 1]);
+        slice.position(bounds[chunk]);
+
+        List<Url> urls = new ArrayList<>();
+        try {
+            new Parser(slice.slice()).parse(urls::add, chunk == 0, chunk == bounds.length - 2);
+            return urls;
+        }
+        catch (UnexpectedContentException e) {
+            return null;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Signals content outside the recognized grammar. Thrown without a stack trace.
+     */
+    private static final class UnexpectedContentException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private static final UnexpectedContentException INSTANCE = new UnexpectedContentException();
+
+        private UnexpectedContentException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Parser {
+        private static final int TAG_URL = 1;
+        private static final int TAG_URL_END = 2;
+        private static final int TAG_LOC = 3;
+        private static final int TAG_LASTMOD = 4;
+        private static final int TAG_CHANGEFREQ = 5;
+        private static final int TAG_PRIORITY = 6;
+        private static final int TAG_URLSET_END = 7;
+
+        private static final byte[][] TAG_NAMES = {
+                null,
+                bytes("url"), bytes("/url"), bytes("loc"), bytes("lastmod"),
+                bytes("changefreq"), bytes("priority"), bytes("/urlset")
+        };
+        private static final byte[][] CHANGEFREQ_NAMES = new byte[ChangeFreq.values().length][];
+        static {
+            for (ChangeFreq changefreq: ChangeFreq.values()) {
+                CHANGEFREQ_NAMES[changefreq.ordinal()] = bytes(changefreq.name().toLowerCase());
+            }
+        }
+
+        /**
+         * Stream the buffer is refilled from, or <code>null</code> if the buffer holds the whole content.
+         */
+        private final InputStream is;
+        private final ByteBuffer buffer;
+        private final LastmodParser lastmodParser = new LastmodParser();
+        private int position;
+        private int limit;
+
+        /**
+         * Reusable buffer of the current tag name or text value.
+         */
+        private byte[] value;
+        private int valueStart;
+        private int valueEnd;
+
+        Parser(InputStream is) {
+            this.is = is;
+            this.buffer = ByteBuffer.wrap(new byte[XMLInputFactories.getReadBufferSize()]);
+            this.value = new byte[256];
+        }
+
+        /**
+         * Creates a parser that scans the remaining bytes of the buffer in place.
+         *
+         * @param content content to parse, such as a file mapped into memory
+         */
+        Parser(ByteBuffer content) {
+            this.is = null;
+            this.buffer = content;
+            this.position = content.position();
+            this.limit = content.limit();
+            this.value = new byte[256];
+        }
+
+        /**
+         * Parses the content and passes every URL to the consumer.
+         *
+         * @param urlConsumer consumer of the parsed URLs
+         * @param prolog indicates whether the content starts with the prolog and the root start tag
+         * @param epilog indicates whether the content ends with the root end tag;
+         *               otherwise it ends right after a URL
+         */
+        void parse(Consumer<Url> urlConsumer, boolean prolog, boolean epilog) throws IOException {
+            if (prolog) {
+                readProlog();
+            }
+            while (true) {
+                skipWhitespace();
+                if (!epilog && position == limit && !fill()) {
+                    return;
+                }
+                int tag = readTag();
+                if (tag == TAG_URLSET_END) {
+                    expect(epilog);
+                    skipWhitespace();
+                    expect(read() == -1);
+                    return;
+                }
+                expect(tag == TAG_URL);
+                urlConsumer.accept(readUrl());
+            }
+        }
+
+        private Url readUrl() throws IOException {
+            String loc = null;
+            Temporal lastmod = null;
+            ChangeFreq changefreq = null;
+            Float priority = null;
+            for (int tag = readTag(); tag != TAG_URL_END; tag = readTag()) {
+                switch (tag) {
+                    case TAG_LOC:
+                        readText(tag);
+                        loc = new String(value, valueStart, valueEnd - valueStart, UTF_8);
+                        break;
+                    case TAG_LASTMOD:
+                        readText(tag);
+                        if (valueEnd > valueStart) {
+                            lastmod = lastmodParser.parse(value, valueStart, valueEnd);
+                        }
+                        break;
+                    case TAG_CHANGEFREQ:
+                        readText(tag);
+                        changefreq = toChangefreq();
+                        break;
+                    case TAG_PRIORITY:
+                        readText(tag);
+                        priority = toPriority();
+                        break;
+                    default:
+                        throw UnexpectedContentException.INSTANCE;
+                }
+            }
+            expect(nonNull(loc) && !loc.isEmpty());
+
+            Url url = new Url(loc);
+            url.setLastmod(lastmod);
+            url.setChangefreq(changefreq);
+            url.setPriority(priority);
+            return url;
+        }
+
+        /**
+         * Reads the XML declaration, if any, and the start tag of the root element.
+         */
+        private void readProlog() throws IOException {
+            int b = read();
+            if (b == 0xEF) {
+                expect(read() == 0xBB && read() == 0xBF);
+                b = read();
+            }
+            while (isWhitespace(b)) {
+                b = read();
+            }
+            expect(b == '<');
+            b = read();
+            if (b == '?') {
+                readDeclaration();
+                skipWhitespace();
+                expect(read() == '<');
+                b = read();
+            }
+
+            byte[] rootName = bytes("urlset");
+            for (byte nameByte: rootName) {
+                expect(b == nameByte);
+                b = read();
+            }
+            expect(isWhitespace(b) || b == '>');
+            int quote = 0;
+            int previous = 0;
+            while (quote != 0 || b != '>') {
+                expect(b >= 0 && (quote != 0 || b != '<'));
+                if (quote == 0 && (b == '"' || b == '\'')) {
+                    quote = b;
+                }
+                else if (b == quote) {
+                    quote = 0;
+                }
+                previous = b;
+                b = read();
+            }
+            expect(previous != '/');
+        }
+
+        private void readDeclaration() throws IOException {
+            valueStart = 0;
+            valueEnd = 0;
+            int b = read();
+            while (!(b == '>' && valueEnd > 0 && value[valueEnd - 1] == '?')) {
+                expect(b >= 0);
+                append(b);
+                b = read();
+            }
+            String declaration = new String(value, 0, valueEnd, UTF_8);
+            int encodingIndex = declaration.indexOf("encoding");
+            if (encodingIndex >= 0) {
+                String encoding = declaration.substring(encodingIndex + "encoding".length()).replaceAll("[\\s=\"'?]", "");
+                expect(encoding.equalsIgnoreCase("UTF-8"));
+            }
+        }
+
+        /**
+         * Reads the next tag preceded by optional whitespace and returns its code.
+         */
+        private int readTag() throws IOException {
+            skipWhitespace();
+            expect(read() == '<');
+            valueStart = 0;
+            valueEnd = 0;
+            int b = read();
+            while (b != '>') {
+                expect(b >= 0 && valueEnd < 16);
+                append(b);
+                b = read();
+            }
+            for (int tag = TAG_URL; tag < TAG_NAMES.length; tag++) {
+                if (valueEquals(TAG_NAMES[tag])) {
+                    return tag;
+                }
+            }
+            throw UnexpectedContentException.INSTANCE;
+        }
+
+        /**
+         * Reads the trimmed text value of the element up to its end tag.
+         */
+        private void readText(int tag) throws IOException {
+            valueStart = 0;
+            valueEnd = 0;
+            boolean hasEntities = false;
+            int b = read();
+            while (b != '<') {
+                expect(b >= 0);
+                hasEntities |= b == '&';
+                append(b);
+                b = read();
+            }
+            expect(read() == '/');
+            for (byte nameByte: TAG_NAMES[tag]) {
+                expect(read() == nameByte);
+            }
+            expect(read() == '>');
+
+            while (valueStart < valueEnd && isWhitespace(value[valueStart])) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && isWhitespace(value[valueEnd - 1])) {
+                valueEnd--;
+            }
+            if (hasEntities) {
+                decodeEntities();
+            }
+        }
+
+        private void decodeEntities() {
+            int target = valueStart;
+            for (int i = valueStart; i < valueEnd; i++) {
+                byte b = value[i];
+                if (b == '&') {
+                    int end = i + 1;
+                    while (end < valueEnd && value[end] != ';') {
+                        end++;
+                    }
+                    expect(end < valueEnd);
+                    b = toEntityChar(i + 1, end);
+                    i = end;
+                }
+                value[target++] = b;
+            }
+            valueEnd = target;
+        }
+
+        private byte toEntityChar(int start, int end) {
+            switch (new String(value, start, end - start, UTF_8)) {
+                case "amp":
+                    return '&';
+                case "lt":
+                    return '<';
+                case "gt":
+                    return '>';
+                case "quot":
+                    return '"';
+                case "apos":
+                    return '\'';
+                default:
+                    throw UnexpectedContentException.INSTANCE;
+            }
+        }
+
+        private ChangeFreq toChangefreq() {
+            for (ChangeFreq changefreq: ChangeFreq.values()) {
+                if (valueEquals(CHANGEFREQ_NAMES[changefreq.ordinal()])) {
+                    return changefreq;
+                }
+            }
+            throw UnexpectedContentException.INSTANCE;
+        }
+
+        /**
+         * Parses a plain decimal number. The result is rounded exactly as by {@link Float#parseFloat(String)}
+         * because both the digits and the power of ten are exact floats.
+         */
+        private float toPriority() {
+            int mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (int i = valueStart; i < valueEnd; i++) {
+                byte b = value[i];
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                }
+                else {
+                    expect(b >= '0' && b <= '9' && mantissa < (1 << 24) / 10);
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                }
+            }
+            expect(digits > 0 && fractionDigits < POWERS_OF_TEN.length);
+            return fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        }
+
+        private boolean valueEquals(byte[] bytes) {
+            if (valueEnd - valueStart != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (value[valueStart + i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void append(int b) {
+            if (valueEnd == value.length) {
+                value = Arrays.copyOf(value, value.length * 2);
+            }
+            value[valueEnd++] = (byte) b;
+        }
+
+        private void skipWhitespace() throws IOException {
+            while (position < limit || fill()) {
+                if (!isWhitespace(buffer.get(position))) {
+                    return;
+                }
+                position++;
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer.get(position++) & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            if (isNull(is)) {
+                return false;
+            }
+            position = 0;
+            limit = Math.max(is.read(buffer.array(), 0, buffer.capacity()), 0);
+            return limit > 0;
+        }
+
+        private static boolean isWhitespace(int b) {
+            return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+        }
+
+        private static void expect(boolean condition) {
+            if (!condition) {
+                throw UnexpectedContentException.INSTANCE;
+            }
+        }
+
+        private static byte[] bytes(String value) {
+            return value.getBytes(UTF_8);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Default storage of sitemap URLs that keeps every URL object in a linked hash map.
+ * The stored URL objects are returned as is, so changing a returned URL changes the stored one.
+ *
+ * @author Oleg Marchenko
+ */
+class HeapUrlStore implements UrlStore {
+    private final Map<String, SitemapIndex.Url> urls = new LinkedHashMap<>(2048);
+
+    @Override
+    public int size() {
+        return urls.size();
+    }
+
+    @Override
+    public boolean contains(String loc) {
+        return urls.containsKey(loc);
+    }
+
+    @Override
+    public SitemapIndex.Url get(String loc) {
+        return urls.get(loc);
+    }
+
+    @Override
+    public void put(SitemapIndex.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        urls.put(url.getLoc(), url);
+    }
+
+    @Override
+    public SitemapIndex.Url replace(SitemapIndex.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        return urls.replace(url.getLoc(), url);
+    }
+
+    @Override
+    public void clear() {
+        urls.clear();
+    }
+
+    @Override
+    public Iterator<SitemapIndex.Url> iterator() {
+        return urls.values().iterator();
+    }
+}
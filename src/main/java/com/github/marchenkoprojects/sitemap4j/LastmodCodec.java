@@ -0,0 +1,107 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.Temporal;
+
+import static java.time.ZoneOffset.UTC;
+import static java.util.Objects.isNull;
+
+/**
+ * Encodes the supported <tt>lastmod</tt> values into primitives and back.
+ * A value is represented by its kind, an epoch value (the year for a year, months since year zero for a year-month,
+ * days for a date, seconds otherwise),
+ * a zone offset in seconds and a nano-of-second.
+ *
+ * @author Oleg Marchenko
+ */
+final class LastmodCodec {
+    static final byte NONE = 0;
+    static final byte DATE = 1;
+    static final byte DATE_TIME = 2;
+    static final byte OFFSET_DATE_TIME = 3;
+    static final byte YEAR = 4;
+    static final byte YEAR_MONTH = 5;
+
+    private LastmodCodec() {
+    }
+
+    static byte kindOf(Temporal lastmod) {
+        if (isNull(lastmod)) {
+            return NONE;
+        }
+        if (lastmod instanceof LocalDate) {
+            return DATE;
+        }
+        if (lastmod instanceof LocalDateTime) {
+            return DATE_TIME;
+        }
+        if (lastmod instanceof OffsetDateTime) {
+            return OFFSET_DATE_TIME;
+        }
+        if (lastmod instanceof Year) {
+            return YEAR;
+        }
+        if (lastmod instanceof YearMonth) {
+            return YEAR_MONTH;
+        }
+        throw new IllegalArgumentException("Unsupported lastmod type: " + lastmod.getClass().getName());
+    }
+
+    static long epochOf(Temporal lastmod) {
+        switch (kindOf(lastmod)) {
+            case DATE:
+                return ((LocalDate) lastmod).toEpochDay();
+            case DATE_TIME:
+                return ((LocalDateTime) lastmod).toEpochSecond(UTC);
+            case OFFSET_DATE_TIME:
+                return ((OffsetDateTime) lastmod).toEpochSecond();
+            case YEAR:
+                return ((Year) lastmod).getValue();
+            case YEAR_MONTH:
+                YearMonth yearMonth = (YearMonth) lastmod;
+                return yearMonth.getYear() * 12L + yearMonth.getMonthValue() - 1;
+            default:
+                return 0;
+        }
+    }
+
+    static int offsetOf(Temporal lastmod) {
+        if (lastmod instanceof OffsetDateTime) {
+            return ((OffsetDateTime) lastmod).getOffset().getTotalSeconds();
+        }
+        return 0;
+    }
+
+    static int nanoOf(Temporal lastmod) {
+        if (lastmod instanceof LocalDateTime) {
+            return ((LocalDateTime) lastmod).getNano();
+        }
+        if (lastmod instanceof OffsetDateTime) {
+            return ((OffsetDateTime) lastmod).getNano();
+        }
+        return 0;
+    }
+
+    static Temporal decode(byte kind, long epoch, int offsetSeconds, int nano) {
+        switch (kind) {
+            case DATE:
+                return LocalDate.ofEpochDay(epoch);
+            case DATE_TIME:
+                return LocalDateTime.ofEpochSecond(epoch, nano, UTC);
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epoch, nano), ZoneOffset.ofTotalSeconds(offsetSeconds));
+            case YEAR:
+                return Year.of((int) epoch);
+            case YEAR_MONTH:
+                return YearMonth.of((int) Math.floorDiv(epoch, 12), (int) Math.floorMod(epoch, 12) + 1);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Parser of <tt>lastmod</tt> values in all six precisions of the W3C Datetime format:
+ * <ul>
+ *     <li><tt>YYYY</tt> is parsed into a {@link Year};</li>
+ *     <li><tt>YYYY-MM</tt> is parsed into a {@link YearMonth};</li>
+ *     <li><tt>YYYY-MM-DD</tt> is parsed into a {@link LocalDate};</li>
+ *     <li><tt>YYYY-MM-DDThh:mmTZD</tt>, <tt>YYYY-MM-DDThh:mm:ssTZD</tt> and <tt>YYYY-MM-DDThh:mm:ss.sTZD</tt>
+ *     are parsed into an {@link OffsetDateTime}.</li>
+ * </ul>
+ * The digits are decoded straight from the text into the primitive form of {@link LastmodCodec}, an epoch value
+ * with a zone offset, without regular expressions or intermediate strings. Every field, including the hours
+ * and minutes of the zone offset, is range-checked before the value is built from this form.
+ * Parsed values are kept in a small cache, so a value that repeats the previous occurrence of the same text
+ * costs only a comparison. The parser is not thread-safe.
+ *
+ * @author Oleg Marchenko
+ * @see <a href="https://www.w3.org/TR/NOTE-datetime">W3C Datetime format</a>
+ */
+final class LastmodParser {
+    private static final int CACHE_SIZE = 64;
+    private static final int MAX_LENGTH = 40;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_0000_TO_1970 = 719_528;
+
+    private final byte[][] cachedTexts = new byte[CACHE_SIZE][];
+    private final Temporal[] cachedValues = new Temporal[CACHE_SIZE];
+
+    /**
+     * Buffer of the text being parsed if it is passed as characters.
+     */
+    private final byte[] text = new byte[MAX_LENGTH];
+
+    /**
+     * Parses the text of a <tt>lastmod</tt> value.
+     *
+     * @param value text without surrounding whitespace
+     * @return the parsed value
+     * @throws DateTimeParseException if the text is not in W3C Datetime format
+     */
+    Temporal parse(CharSequence value) {
+        int length = value.length();
+        if (length > MAX_LENGTH) {
+            throw parseException(value.toString(), MAX_LENGTH);
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c > 0x7F) {
+                throw parseException(value.toString(), i);
+            }
+            text[i] = (byte) c;
+        }
+        return parse(text, 0, length);
+    }
+
+    /**
+     * Parses the ASCII text of a <tt>lastmod</tt> value.
+     *
+     * @param bytes buffer with the text
+     * @param start index of the first byte of the text
+     * @param end index after the last byte of the text
+     * @return the parsed value
+     * @throws DateTimeParseException if the text is not in W3C Datetime format
+     */
+    Temporal parse(byte[] bytes, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        byte[] cachedText = cachedTexts[slot];
+        if (cachedText != null && cachedText.length == end - start && regionEquals(cachedText, bytes, start)) {
+            return cachedValues[slot];
+        }
+
+        Temporal value = decode(bytes, start, end);
+        cachedTexts[slot] = Arrays.copyOfRange(bytes, start, end);
+        cachedValues[slot] = value;
+        return value;
+    }
+
+    /**
+     * Decodes the digits of the text straight into the primitive form of {@link LastmodCodec}
+     * and builds the value from it.
+     */
+    private static Temporal decode(byte[] bytes, int start, int end) {
+        int length = end - start;
+        try {
+            int year = digits(bytes, start, end, 0, 4);
+            if (length == 4) {
+                return LastmodCodec.decode(LastmodCodec.YEAR, year, 0, 0);
+            }
+            expectChar(bytes, start, end, 4, '-');
+            int month = range(digits(bytes, start, end, 5, 2), 1, 12);
+            if (length == 7) {
+                return LastmodCodec.decode(LastmodCodec.YEAR_MONTH, year * 12L + month - 1, 0, 0);
+            }
+            expectChar(bytes, start, end, 7, '-');
+            int day = range(digits(bytes, start, end, 8, 2), 1, lengthOfMonth(year, month));
+            long epochDay = epochDay(year, month, day);
+            if (length == 10) {
+                return LastmodCodec.decode(LastmodCodec.DATE, epochDay, 0, 0);
+            }
+
+            expectChar(bytes, start, end, 10, 'T');
+            int hour = range(digits(bytes, start, end, 11, 2), 0, 23);
+            expectChar(bytes, start, end, 13, ':');
+            int minute = range(digits(bytes, start, end, 14, 2), 0, 59);
+            int position = 16;
+            int second = 0;
+            int nano = 0;
+            if (position < length && bytes[start + position] == ':') {
+                second = range(digits(bytes, start, end, 17, 2), 0, 59);
+                position = 19;
+                if (position < length && bytes[start + position] == '.') {
+                    position++;
+                    int fractionStart = position;
+                    int scale = 100_000_000;
+                    while (position < length && isDigit(bytes[start + position])) {
+                        nano += (bytes[start + position] - '0') * scale;
+                        scale /= 10;
+                        position++;
+                    }
+                    if (position == fractionStart) {
+                        throw new IndexOutOfBoundsException();
+                    }
+                }
+            }
+
+            int offsetSeconds;
+            byte sign = position < length ? bytes[start + position] : 0;
+            if (sign == 'Z' && position + 1 == length) {
+                offsetSeconds = 0;
+            }
+            else if ((sign == '+' || sign == '-') && position + 6 == length) {
+                int offsetHours = range(digits(bytes, start, end, position + 1, 2), 0, 18);
+                expectChar(bytes, start, end, position + 3, ':');
+                int offsetMinutes = range(digits(bytes, start, end, position + 4, 2), 0, offsetHours < 18 ? 59 : 0);
+                offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+                if (sign == '-') {
+                    offsetSeconds = -offsetSeconds;
+                }
+            }
+            else {
+                throw new IndexOutOfBoundsException();
+            }
+            long epochSecond = epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second - offsetSeconds;
+            return LastmodCodec.decode(LastmodCodec.OFFSET_DATE_TIME, epochSecond, offsetSeconds, nano);
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw parseException(new String(bytes, start, length, US_ASCII), 0);
+        }
+    }
+
+    /**
+     * Calculates the number of days from 1970-01-01 to the date the same way as {@link LocalDate#toEpochDay()}
+     * does for years from 0 to 9999.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int range(int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IndexOutOfBoundsException();
+        }
+        return value;
+    }
+
+    private static int digits(byte[] bytes, int start, int end, int index, int count) {
+        if (start + index + count > end) {
+            throw new IndexOutOfBoundsException();
+        }
+        int value = 0;
+        for (int i = start + index; i < start + index + count; i++) {
+            if (!isDigit(bytes[i])) {
+                throw new IndexOutOfBoundsException();
+            }
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    private static void expectChar(byte[] bytes, int start, int end, int index, char expected) {
+        if (start + index >= end || bytes[start + index] != expected) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean regionEquals(byte[] cachedText, byte[] bytes, int start) {
+        for (int i = 0; i < cachedText.length; i++) {
+            if (cachedText[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static DateTimeParseException parseException(String value, int errorIndex) {
+        return new DateTimeParseException("Text '" + value + "' is not a valid W3C Datetime", value, errorIndex);
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+
+/**
+ * Append-only arena of URL locations encoded as UTF-8 bytes.
+ *
+ * <p> Two techniques are used to avoid repeating common parts of the locations:
+ * <ol>
+ *     <li>The base site URL is stored once and stripped from every location that starts with it;</li>
+ *     <li>The rest of a location is front-coded: only the length of the part shared with the previous
+ *     location and the remaining bytes are stored. Every {@value #RESTART_INTERVAL}th location is stored
+ *     in full, so decoding a location never needs more than that number of steps.</li>
+ * </ol>
+ *
+ * <p> A location is identified by its row number in order of addition.
+ *
+ * @author Oleg Marchenko
+ */
+final class LocArena {
+    static final int RESTART_INTERVAL = 16;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int INITIAL_ARENA_SIZE = 16 * 1024;
+
+    /**
+     * Base site URL that is stripped from the locations.
+     */
+    private final String prefix;
+
+    private byte[] arena;
+    private int arenaSize;
+
+    /**
+     * Start offsets of the location records in the arena.
+     * The record of a row ends where the record of the next row starts.
+     */
+    private int[] offsets;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * The key form of the last added location, used for front coding of the next one.
+     */
+    private byte[] previous;
+    private int previousLength;
+
+    /**
+     * Reusable buffer for decoding locations.
+     */
+    private byte[] buffer;
+
+    LocArena(String baseUrl) {
+        this.prefix = isNull(baseUrl) ? "" : baseUrl;
+        this.buffer = new byte[256];
+        clear();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Converts the location into its key form: the first byte indicates whether the base URL is stripped,
+     * the remaining bytes are the rest of the location in UTF-8.
+     *
+     * @param loc URL location
+     * @return key form of the location
+     */
+    byte[] toKey(String loc) {
+        return toKey(loc, prefix);
+    }
+
+    /**
+     * Converts the location into its key form using the given base URL.
+     *
+     * @param loc URL location
+     * @param prefix base site URL or an empty string
+     * @return key form of the location
+     * @see #toKey(String)
+     */
+    static byte[] toKey(String loc, String prefix) {
+        boolean stripped = !prefix.isEmpty() && loc.startsWith(prefix);
+        String rest = stripped ? loc.substring(prefix.length()) : loc;
+        byte[] restBytes = rest.getBytes(UTF_8);
+
+        byte[] key = new byte[restBytes.length + 1];
+        key[0] = (byte) (stripped ? 1 : 0);
+        System.arraycopy(restBytes, 0, key, 1, restBytes.length);
+        return key;
+    }
+
+    static int hash(byte[] key, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + key[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    int hash(int row) {
+        return hashes[row];
+    }
+
+    /**
+     * Appends a location in key form.
+     *
+     * @param key key form of the location
+     * @param hash hash of the key
+     * @return row number of the added location
+     */
+    int append(byte[] key, int hash) {
+        int row = size;
+        int shared = 0;
+        if (row % RESTART_INTERVAL != 0) {
+            int limit = Math.min(previousLength, key.length) - 1;
+            while (shared < limit && previous[shared + 1] == key[shared + 1]) {
+                shared++;
+            }
+        }
+
+        int header = (shared << 1) | key[0];
+        int suffixLength = key.length - 1 - shared;
+        ensureArenaCapacity(5 + suffixLength);
+        while ((header & ~0x7F) != 0) {
+            arena[arenaSize++] = (byte) ((header & 0x7F) | 0x80);
+            header >>>= 7;
+        }
+        arena[arenaSize++] = (byte) header;
+        System.arraycopy(key, 1 + shared, arena, arenaSize, suffixLength);
+        arenaSize += suffixLength;
+
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        hashes[row] = hash;
+        offsets[++size] = arenaSize;
+
+        previous = key;
+        previousLength = key.length;
+        return row;
+    }
+
+    /**
+     * Returns <code>true</code> if the location of the row has the given key form.
+     *
+     * @param row row number
+     * @param key key form of the location
+     * @return <code>true</code> if the location matches the key
+     */
+    boolean matches(int row, byte[] key) {
+        int length = decode(row);
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String get(int row) {
+        int length = decode(row);
+        return toLoc(buffer, length);
+    }
+
+    void clear() {
+        arena = new byte[INITIAL_ARENA_SIZE];
+        arenaSize = 0;
+        offsets = new int[INITIAL_CAPACITY + 1];
+        hashes = new int[INITIAL_CAPACITY];
+        size = 0;
+        previous = null;
+        previousLength = 0;
+    }
+
+    /**
+     * Decodes the key form of the row into the buffer.
+     *
+     * @param row row number
+     * @return length of the key form
+     */
+    private int decode(int row) {
+        int length = 1;
+        for (int current = row - row % RESTART_INTERVAL; current <= row; current++) {
+            int position = offsets[current];
+            int header = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = arena[position++];
+                header |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            int suffixLength = offsets[current + 1] - position;
+            length = 1 + (header >>> 1) + suffixLength;
+            if (length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            }
+            buffer[0] = (byte) (header & 1);
+            System.arraycopy(arena, position, buffer, length - suffixLength, suffixLength);
+        }
+        return length;
+    }
+
+    private String toLoc(byte[] key, int length) {
+        String rest = new String(key, 1, length - 1, UTF_8);
+        return key[0] == 1 ? prefix + rest : rest;
+    }
+
+    private void ensureArenaCapacity(int length) {
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.function.IntPredicate;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Index-wide registry that maps the location of a URL to the number of the sitemap that owns it.
+ *
+ * <p> Only a 64-bit hash of every location is kept, so the registry costs a few bytes per URL
+ * and does not retain the location strings. Because different locations may share a hash,
+ * a lookup confirms each candidate sitemap with a predicate before returning it.
+ *
+ * <p> The hash table is split into pages of at most 16 MB, kept either in heap buffers or,
+ * for off-heap URL storage, in a memory-mapped temporary file. The temporary file is deleted
+ * as soon as the table moves to a new one on growth or clearing. The table holds up to 2<sup>30</sup> slots
+ * and is never more than half full, so the registry is limited to 536,870,912 URLs.
+ *
+ * @author Oleg Marchenko
+ */
+final class LocRegistry {
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int SLOT_SIZE = 16;
+    private static final int OWNER_OFFSET = 8;
+
+    /**
+     * Number of slots in a full page is <code>2<sup>PAGE_SHIFT</sup></code>.
+     */
+    private static final int PAGE_SHIFT = 20;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private final boolean offHeap;
+
+    /**
+     * Pages of the open addressing hash table of slots with a location hash and a sitemap number;
+     * a zero hash marks an empty slot.
+     */
+    private ByteBuffer[] pages;
+
+    /**
+     * Temporary file of the pages of an off-heap registry.
+     */
+    private File file;
+    private int capacity;
+    private int size;
+
+    LocRegistry(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.pages = allocate(INITIAL_CAPACITY);
+        this.capacity = INITIAL_CAPACITY;
+    }
+
+    /**
+     * Returns <code>true</code> if the hash table is kept outside the Java heap.
+     *
+     * @return <code>true</code> for an off-heap registry
+     */
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Registers the location as owned by the sitemap with the given number.
+     *
+     * @param loc URL location
+     * @param owner number of the sitemap that owns the location
+     */
+    void register(String loc, int owner) {
+        registerHash(hash(loc), owner);
+    }
+
+    /**
+     * Finds the number of the sitemap that owns the location.
+     *
+     * @param loc URL location
+     * @param ownsLoc confirms that the candidate sitemap really contains the location
+     * @return number of the sitemap or <code>-1</code> if the location is not registered
+     */
+    int find(String loc, IntPredicate ownsLoc) {
+        long hash = hash(loc);
+        int mask = capacity - 1;
+        for (int slot = slotOf(hash, mask); ; slot = (slot + 1) & mask) {
+            long slotHash = hashAt(pages, slot);
+            if (slotHash == 0) {
+                return -1;
+            }
+            int owner = ownerAt(pages, slot);
+            if (slotHash == hash && ownsLoc.test(owner)) {
+                return owner;
+            }
+        }
+    }
+
+    /**
+     * Performs the action for every registered location hash and the number of the sitemap that owns it.
+     *
+     * @param action action to be performed for each entry
+     */
+    void forEach(EntryConsumer action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            long hash = hashAt(pages, slot);
+            if (hash != 0) {
+                action.accept(hash, ownerAt(pages, slot));
+            }
+        }
+    }
+
+    /**
+     * Registers an already calculated location hash as owned by the sitemap with the given number.
+     *
+     * @param hash location hash calculated by {@link #hash(String)}
+     * @param owner number of the sitemap that owns the location
+     * @throws IllegalStateException if the registry already holds 536,870,912 URLs
+     */
+    void registerHash(long hash, int owner) {
+        if ((size + 1L) * 2 > capacity) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IllegalStateException("URL registry cannot exceed 536,870,912 URLs");
+            }
+            resize(capacity * 2);
+        }
+        insert(hash, owner);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        File oldFile = file;
+        pages = allocate(INITIAL_CAPACITY);
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+        deleteFile(oldFile);
+    }
+
+    private void insert(long hash, int owner) {
+        int mask = capacity - 1;
+        int slot = slotOf(hash, mask);
+        while (hashAt(pages, slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        ByteBuffer page = pages[slot >>> PAGE_SHIFT];
+        int offset = (slot & PAGE_MASK) * SLOT_SIZE;
+        page.putLong(offset, hash);
+        page.putInt(offset + OWNER_OFFSET, owner);
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer[] oldPages = pages;
+        File oldFile = file;
+        int oldCapacity = capacity;
+        pages = allocate(newCapacity);
+        capacity = newCapacity;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long hash = hashAt(oldPages, slot);
+            if (hash != 0) {
+                insert(hash, ownerAt(oldPages, slot));
+            }
+        }
+        deleteFile(oldFile);
+    }
+
+    private ByteBuffer[] allocate(int slots) {
+        int pageSize = Math.min(slots, PAGE_MASK + 1) * SLOT_SIZE;
+        ByteBuffer[] newPages = new ByteBuffer[Math.max(slots >>> PAGE_SHIFT, 1)];
+        if (offHeap) {
+            file = MappedFiles.createTempFile("sitemap4j-locs");
+            for (int i = 0; i < newPages.length; i++) {
+                newPages[i] = MappedFiles.map(file, (long) i * pageSize, pageSize);
+            }
+        }
+        else {
+            for (int i = 0; i < newPages.length; i++) {
+                newPages[i] = ByteBuffer.allocate(pageSize);
+            }
+        }
+        return newPages;
+    }
+
+    /**
+     * Deletes the temporary file of the replaced pages rather than leaving it on disk until the virtual machine
+     * terminates. The mappings of the file stay valid until they are garbage collected.
+     */
+    private static void deleteFile(File oldFile) {
+        if (nonNull(oldFile)) {
+            oldFile.delete();
+        }
+    }
+
+    private static long hashAt(ByteBuffer[] pages, int slot) {
+        return pages[slot >>> PAGE_SHIFT].getLong((slot & PAGE_MASK) * SLOT_SIZE);
+    }
+
+    private static int ownerAt(ByteBuffer[] pages, int slot) {
+        return pages[slot >>> PAGE_SHIFT].getInt((slot & PAGE_MASK) * SLOT_SIZE + OWNER_OFFSET);
+    }
+
+    private static int slotOf(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Calculates a stable 64-bit FNV-1a hash of the location with a final avalanche step.
+     * Zero is never returned because it marks an empty slot.
+     *
+     * @param loc URL location
+     * @return hash of the location
+     */
+    static long hash(String loc) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < loc.length(); i++) {
+            h ^= loc.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Consumer of a registry entry.
+     */
+    interface EntryConsumer {
+        void accept(long hash, int owner);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+/**
+ * Helpers for working with memory-mapped files.
+ * The channel of a mapped file is closed right after mapping, the mapping itself stays valid
+ * until the buffer is garbage collected.
+ *
+ * @author Oleg Marchenko
+ */
+final class MappedFiles {
+
+    private MappedFiles() {
+    }
+
+    /**
+     * Maps the first <code>size</code> bytes of the file into memory, extending the file if needed.
+     *
+     * @param file file to map
+     * @param size number of bytes to map
+     * @return mapped buffer
+     * @throws UncheckedIOException if the file cannot be mapped
+     */
+    static MappedByteBuffer map(File file, int size) {
+        return map(file, 0, size);
+    }
+
+    /**
+     * Maps <code>size</code> bytes of the file starting at the given position into memory, extending the file if needed.
+     *
+     * @param file file to map
+     * @param position position in the file where the mapped region starts
+     * @param size number of bytes to map
+     * @return mapped buffer
+     * @throws UncheckedIOException if the file cannot be mapped
+     */
+    static MappedByteBuffer map(File file, long position, int size) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(READ_WRITE, position, size);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps the whole file into memory for reading.
+     *
+     * @param file file to map
+     * @return mapped buffer
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedByteBuffer mapReadOnly(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Truncates the file to zero length and maps its first <code>size</code> bytes filled with zeros.
+     * Buffers that were mapped from the file before must not be used afterwards.
+     *
+     * @param file file to map
+     * @param size number of bytes to map
+     * @return mapped buffer
+     * @throws UncheckedIOException if the file cannot be mapped
+     */
+    static MappedByteBuffer mapEmpty(File file, int size) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            return raf.getChannel().map(READ_WRITE, 0, size);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a temporary file that is deleted when the virtual machine terminates.
+     *
+     * @param prefix prefix of the file name
+     * @return temporary file
+     * @throws UncheckedIOException if the file cannot be created
+     */
+    static File createTempFile(String prefix) {
+        try {
+            File file = File.createTempFile(prefix, ".tmp");
+            file.deleteOnExit();
+            return file;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
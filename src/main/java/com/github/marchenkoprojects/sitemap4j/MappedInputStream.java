@@ -0,0 +1,64 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream over a file, or a part of a file, mapped into memory.
+ * Reading copies bytes straight from the mapping, without a system call per buffer;
+ * a parser that works on bytes can also scan the mapping in place through {@link #getBuffer()}.
+ *
+ * @author Oleg Marchenko
+ */
+final class MappedInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    MappedInputStream(File file) throws IOException {
+        this(MappedFiles.mapReadOnly(file));
+    }
+
+    MappedInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns the unread part of the mapping. Reading the returned buffer does not advance this stream.
+     *
+     * @return buffer positioned at the next unread byte
+     */
+    ByteBuffer getBuffer() {
+        return buffer.slice();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long count) {
+        int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
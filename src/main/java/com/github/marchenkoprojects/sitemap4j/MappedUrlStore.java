@@ -0,0 +1,377 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Off-heap storage of sitemap URLs backed by memory-mapped files.
+ *
+ * <p> The URLs are kept in two files in the store directory, named after the sitemap file
+ * and a hash of its absolute path:
+ * <ul>
+ *     <li><tt>&lt;name&gt;-&lt;hash&gt;.urls</tt> is a log of fixed-layout records in order of addition;</li>
+ *     <li><tt>&lt;name&gt;-&lt;hash&gt;.urls.idx</tt> is an open addressing hash table of record positions.</li>
+ * </ul>
+ * Only the mappings are referenced from the heap, so the heap footprint does not depend on the number of URLs.
+ * The base site URL is stored once in the header and stripped from the stored locations.
+ * URL objects are built on demand.
+ *
+ * <p> The files outlive the process. When a store is opened, its content is kept only if it is synchronized
+ * with the current state of the sitemap file; otherwise the store starts empty.
+ *
+ * <p> The insertion order is preserved. Removing single URLs is not supported.
+ *
+ * @author Oleg Marchenko
+ */
+class MappedUrlStore implements PersistentUrlStore {
+    private static final String DATA_FILE_EXT = ".urls";
+    private static final String TABLE_FILE_EXT = ".idx";
+
+    private static final int MAGIC = 0x53344A55;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int VERSION_POSITION = 4;
+    private static final int SIZE_POSITION = 8;
+    private static final int DATA_END_POSITION = 12;
+    private static final int SYNCHRONIZED_POSITION = 16;
+    private static final int SOURCE_LENGTH_POSITION = 24;
+    private static final int SOURCE_MODIFIED_POSITION = 32;
+    private static final int PREFIX_LENGTH_POSITION = 40;
+
+    private static final int RECORD_LENGTH = 0;
+    private static final int RECORD_HASH = 4;
+    private static final int RECORD_FLAGS = 8;
+    private static final int RECORD_LASTMOD_KIND = 9;
+    private static final int RECORD_LASTMOD_EPOCH = 10;
+    private static final int RECORD_LASTMOD_OFFSET = 18;
+    private static final int RECORD_LASTMOD_NANO = 22;
+    private static final int RECORD_CHANGEFREQ = 26;
+    private static final int RECORD_PRIORITY = 27;
+    private static final int RECORD_LOC = 29;
+
+    private static final int INITIAL_DATA_SIZE = 1 << 20;
+    private static final int INITIAL_TABLE_CAPACITY = 1024;
+    private static final int PRIORITY_SCALE = 10_000;
+    private static final short NO_PRIORITY = -1;
+
+    private final File dataFile;
+    private final File tableFile;
+    private final String baseUrl;
+
+    /**
+     * Base site URL stripped from the stored locations.
+     * It is kept in the header, after the fixed fields, and may differ from the current base URL
+     * until the store is cleared.
+     */
+    private String prefix;
+    private int dataStart;
+
+    private MappedByteBuffer data;
+    /**
+     * Hash table of record positions increased by one; zero marks an empty slot.
+     */
+    private MappedByteBuffer table;
+    private int tableCapacity;
+
+    MappedUrlStore(File sitemapFile, String baseUrl, File storeDirectory) {
+        if (!storeDirectory.isDirectory() && !storeDirectory.mkdirs() && !storeDirectory.isDirectory()) {
+            throw new UncheckedIOException(new IOException("Store directory cannot be created: " + storeDirectory));
+        }
+        String sitemapPath = sitemapFile.getAbsolutePath();
+        String storeName = sitemapFile.getName() + '-' + Long.toHexString(LocRegistry.hash(sitemapPath));
+        this.dataFile = new File(storeDirectory, storeName + DATA_FILE_EXT);
+        this.tableFile = new File(dataFile.getPath() + TABLE_FILE_EXT);
+        this.baseUrl = isNull(baseUrl) ? "" : baseUrl;
+        open(sitemapFile);
+    }
+
+    @Override
+    public int size() {
+        return data.getInt(SIZE_POSITION);
+    }
+
+    @Override
+    public boolean contains(String loc) {
+        return nonNull(loc) && findRecord(LocArena.toKey(loc, prefix)) >= 0;
+    }
+
+    @Override
+    public SitemapIndex.Url get(String loc) {
+        if (isNull(loc)) {
+            return null;
+        }
+        int position = findRecord(LocArena.toKey(loc, prefix));
+        return position >= 0 ? buildUrl(position) : null;
+    }
+
+    @Override
+    public void put(SitemapIndex.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        byte[] loc = LocArena.toKey(url.getLoc(), prefix);
+        int position = findRecord(loc);
+        if (position < 0) {
+            position = appendRecord(loc);
+        }
+        writeFields(position, url);
+    }
+
+    @Override
+    public SitemapIndex.Url replace(SitemapIndex.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        int position = findRecord(LocArena.toKey(url.getLoc(), prefix));
+        if (position < 0) {
+            return null;
+        }
+        SitemapIndex.Url prevUrl = buildUrl(position);
+        writeFields(position, url);
+        return prevUrl;
+    }
+
+    @Override
+    public void clear() {
+        resetSynchronization();
+
+        byte[] prefixBytes = baseUrl.getBytes(UTF_8);
+        ByteBuffer prefixBuffer = data.duplicate();
+        prefixBuffer.position(HEADER_SIZE);
+        prefixBuffer.put(prefixBytes);
+        data.putInt(PREFIX_LENGTH_POSITION, prefixBytes.length);
+        prefix = baseUrl;
+        dataStart = HEADER_SIZE + prefixBytes.length;
+
+        data.putInt(SIZE_POSITION, 0);
+        data.putInt(DATA_END_POSITION, dataStart);
+        createTable(INITIAL_TABLE_CAPACITY);
+    }
+
+    @Override
+    public Iterator<SitemapIndex.Url> iterator() {
+        return new Iterator<SitemapIndex.Url>() {
+            private int position = dataStart;
+
+            @Override
+            public boolean hasNext() {
+                return position < data.getInt(DATA_END_POSITION);
+            }
+
+            @Override
+            public SitemapIndex.Url next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                SitemapIndex.Url url = buildUrl(position);
+                position += data.getInt(position + RECORD_LENGTH);
+                return url;
+            }
+        };
+    }
+
+    @Override
+    public void forEachLoc(Consumer<? super String> action) {
+        int dataEnd = data.getInt(DATA_END_POSITION);
+        for (int position = dataStart; position < dataEnd; position += data.getInt(position + RECORD_LENGTH)) {
+            action.accept(getLoc(position));
+        }
+    }
+
+    @Override
+    public boolean isSynchronizedWith(File file) {
+        return data.getInt(SYNCHRONIZED_POSITION) == 1
+                && data.getLong(SOURCE_LENGTH_POSITION) == file.length()
+                && data.getLong(SOURCE_MODIFIED_POSITION) == file.lastModified()
+                && file.exists();
+    }
+
+    @Override
+    public void synchronizeWith(File file) {
+        data.putLong(SOURCE_LENGTH_POSITION, file.length());
+        data.putLong(SOURCE_MODIFIED_POSITION, file.lastModified());
+        data.putInt(SYNCHRONIZED_POSITION, 1);
+        data.force();
+        table.force();
+    }
+
+    private void open(File sitemapFile) {
+        boolean exists = dataFile.length() >= HEADER_SIZE;
+        data = MappedFiles.map(dataFile, (int) Math.max(dataFile.length(), INITIAL_DATA_SIZE));
+        if (exists && data.getInt(0) == MAGIC && data.getInt(VERSION_POSITION) == VERSION
+                && isSynchronizedWith(sitemapFile)) {
+            byte[] prefixBytes = new byte[data.getInt(PREFIX_LENGTH_POSITION)];
+            ByteBuffer prefixBuffer = data.duplicate();
+            prefixBuffer.position(HEADER_SIZE);
+            prefixBuffer.get(prefixBytes);
+            prefix = new String(prefixBytes, UTF_8);
+            dataStart = HEADER_SIZE + prefixBytes.length;
+
+            tableCapacity = tableCapacityFor(size());
+            if (tableFile.length() == tableCapacity * 4L) {
+                table = MappedFiles.map(tableFile, tableCapacity * 4);
+            }
+            else {
+                rebuildTable(tableCapacity);
+            }
+        }
+        else {
+            data.putInt(0, MAGIC);
+            data.putInt(VERSION_POSITION, VERSION);
+            clear();
+        }
+    }
+
+    private int findRecord(byte[] loc) {
+        int hash = LocArena.hash(loc, loc.length);
+        int mask = tableCapacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int position = table.getInt(slot * 4) - 1;
+            if (position < 0) {
+                return -1;
+            }
+            if (data.getInt(position + RECORD_HASH) == hash && matches(position, loc)) {
+                return position;
+            }
+        }
+    }
+
+    private boolean matches(int position, byte[] loc) {
+        int locLength = data.getInt(position + RECORD_LENGTH) - RECORD_LOC;
+        if (locLength != loc.length - 1 || data.get(position + RECORD_FLAGS) != loc[0]) {
+            return false;
+        }
+        for (int i = 0; i < locLength; i++) {
+            if (data.get(position + RECORD_LOC + i) != loc[i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int appendRecord(byte[] loc) {
+        resetSynchronization();
+
+        int position = data.getInt(DATA_END_POSITION);
+        long recordLength = (long) RECORD_LOC + loc.length - 1;
+        if (position + recordLength > data.capacity()) {
+            long capacity = Math.max(data.capacity() * 2L, position + recordLength);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("URL store exceeds 2 GB: " + dataFile);
+            }
+            data = MappedFiles.map(dataFile, (int) capacity);
+        }
+
+        data.putInt(position + RECORD_LENGTH, (int) recordLength);
+        data.putInt(position + RECORD_HASH, LocArena.hash(loc, loc.length));
+        data.put(position + RECORD_FLAGS, loc[0]);
+        ByteBuffer locBuffer = data.duplicate();
+        locBuffer.position(position + RECORD_LOC);
+        locBuffer.put(loc, 1, loc.length - 1);
+        int size = size() + 1;
+        data.putInt(DATA_END_POSITION, position + (int) recordLength);
+        data.putInt(SIZE_POSITION, size);
+
+        if (size * 2 > tableCapacity) {
+            rebuildTable(tableCapacity * 2);
+        }
+        else {
+            insertIntoTable(position);
+        }
+        return position;
+    }
+
+    private void createTable(int capacity) {
+        tableCapacity = capacity;
+        table = MappedFiles.mapEmpty(tableFile, capacity * 4);
+    }
+
+    private void rebuildTable(int capacity) {
+        createTable(capacity);
+        int dataEnd = data.getInt(DATA_END_POSITION);
+        for (int position = dataStart; position < dataEnd; position += data.getInt(position + RECORD_LENGTH)) {
+            insertIntoTable(position);
+        }
+    }
+
+    private void insertIntoTable(int position) {
+        int mask = tableCapacity - 1;
+        int slot = data.getInt(position + RECORD_HASH) & mask;
+        while (table.getInt(slot * 4) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.putInt(slot * 4, position + 1);
+    }
+
+    private void writeFields(int position, SitemapIndex.Url url) {
+        resetSynchronization();
+
+        data.put(position + RECORD_LASTMOD_KIND, LastmodCodec.kindOf(url.lastmod));
+        data.putLong(position + RECORD_LASTMOD_EPOCH, LastmodCodec.epochOf(url.lastmod));
+        data.putInt(position + RECORD_LASTMOD_OFFSET, LastmodCodec.offsetOf(url.lastmod));
+        data.putInt(position + RECORD_LASTMOD_NANO, LastmodCodec.nanoOf(url.lastmod));
+
+        ChangeFreq changefreq = null;
+        Float priority = null;
+        if (url instanceof Sitemap.Url) {
+            changefreq = ((Sitemap.Url) url).getChangefreq();
+            priority = ((Sitemap.Url) url).getPriority();
+        }
+        data.put(position + RECORD_CHANGEFREQ, (byte) (nonNull(changefreq) ? changefreq.ordinal() + 1 : 0));
+        data.putShort(position + RECORD_PRIORITY, nonNull(priority) ? (short) Math.round(priority * PRIORITY_SCALE) : NO_PRIORITY);
+    }
+
+    private void resetSynchronization() {
+        if (data.getInt(SYNCHRONIZED_POSITION) != 0) {
+            data.putInt(SYNCHRONIZED_POSITION, 0);
+        }
+    }
+
+    private String getLoc(int position) {
+        int locLength = data.getInt(position + RECORD_LENGTH) - RECORD_LOC;
+        byte[] bytes = new byte[locLength];
+        ByteBuffer locBuffer = data.duplicate();
+        locBuffer.position(position + RECORD_LOC);
+        locBuffer.get(bytes);
+        String rest = new String(bytes, UTF_8);
+        return data.get(position + RECORD_FLAGS) == 1 ? prefix + rest : rest;
+    }
+
+    private Sitemap.Url buildUrl(int position) {
+        Sitemap.Url url = new Sitemap.Url(getLoc(position));
+        url.setLastmod(LastmodCodec.decode(
+                data.get(position + RECORD_LASTMOD_KIND),
+                data.getLong(position + RECORD_LASTMOD_EPOCH),
+                data.getInt(position + RECORD_LASTMOD_OFFSET),
+                data.getInt(position + RECORD_LASTMOD_NANO)));
+
+        byte changefreq = data.get(position + RECORD_CHANGEFREQ);
+        if (changefreq != 0) {
+            url.setChangefreq(ChangeFreq.values()[changefreq - 1]);
+        }
+        short priority = data.getShort(position + RECORD_PRIORITY);
+        if (priority != NO_PRIORITY) {
+            url.setPriority(priority / (float) PRIORITY_SCALE);
+        }
+        return url;
+    }
+
+    private static int tableCapacityFor(int size) {
+        int capacity = INITIAL_TABLE_CAPACITY;
+        while (size * 2 > capacity) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+
+/**
+ * URL store whose content outlives the process.
+ * Such a store remembers the state of the sitemap file it was last synchronized with,
+ * so a sitemap does not need to parse the file again while it is unchanged.
+ * A sitemap keeps the content of a persistent store after flushing instead of clearing it.
+ *
+ * @author Oleg Marchenko
+ */
+public interface PersistentUrlStore extends UrlStore {
+
+    /**
+     * Returns <code>true</code> if the content of the store matches the current state of the sitemap file.
+     *
+     * @param file sitemap file
+     * @return <code>true</code> if the store is synchronized with the file
+     */
+    boolean isSynchronizedWith(File file);
+
+    /**
+     * Remembers that the content of the store matches the current state of the sitemap file.
+     * Any later modification of the store resets this state.
+     *
+     * @param file sitemap file
+     */
+    void synchronizeWith(File file);
+}
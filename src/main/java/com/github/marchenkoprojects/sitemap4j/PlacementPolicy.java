@@ -0,0 +1,23 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+/**
+ * This type is used to indicate how a sitemap index chooses the sitemap for a new URL
+ * among the registered sitemaps that still have free capacity.
+ *
+ * @author Oleg Marchenko
+ * @see SitemapIndex#setPlacementPolicy(PlacementPolicy)
+ */
+public enum PlacementPolicy {
+    /**
+     * Fills the first available sitemap up to its limit before using the next one.
+     */
+    FILL_FIRST,
+    /**
+     * Distributes new URLs across the available sitemaps in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * Adds each new URL to the available sitemap that currently stores the fewest URLs.
+     */
+    LEAST_LOADED
+}
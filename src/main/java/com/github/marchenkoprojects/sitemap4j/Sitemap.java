@@ -1,8 +1,8 @@
 package com.github.marchenkoprojects.sitemap4j;
 
+import javax.xml.stream.XMLInputFactory;
 import java.io.File;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.function.Consumer;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
@@ -36,6 +36,21 @@ public class Sitemap {
      * The maximum number of URLs that a sitemap can store from the specification.
      */
     private static final int DEFAULT_MAX_URLS = 50_000;
+    /**
+     * The maximum uncompressed size of a sitemap file in bytes from the specification.
+     */
+    private static final long DEFAULT_MAX_FILE_SIZE = 50L * 1024 * 1024;
+
+    /**
+     * Serializer of the sitemap file, also used to measure the size of the URLs.
+     */
+    private static final SitemapFlusher FLUSHER = new SitemapFlusher();
+
+    /**
+     * Size of the smallest possible URL: a one-character location without optional tags.
+     * A sitemap with less space left cannot take any more URLs.
+     */
+    private static final long MIN_URL_SIZE = FLUSHER.measureUrl(new Url("/"));
 
     /**
      * This file is the main sitemap file.
@@ -53,13 +68,51 @@ public class Sitemap {
      * Internal registry of all URLs in the sitemap.
      * Represents the current state of a sitemap in memory.
      */
-    protected final Map<String, SitemapIndex.Url> urls;
+    protected UrlStore urls;
+
+    /**
+     * Indicates how the URLs of the sitemap are kept in memory.
+     */
+    protected UrlStoreFactory urlStorage;
 
     /**
      * Indicates the maximum number of URls that a sitemap can store.
      */
     protected int maxUrls;
 
+    /**
+     * Indicates the maximum uncompressed size of the sitemap file in bytes.
+     */
+    protected long maxFileSize;
+
+    /**
+     * Indicates whether the sitemap file is loaded by scanning its bytes instead of with an XML parser.
+     */
+    protected boolean fastLoading;
+
+    /**
+     * Indicates whether a large uncompressed sitemap file is split into chunks that are parsed in parallel.
+     */
+    protected boolean parallelParsing;
+
+    /**
+     * Indicates whether the sitemap has been modified since it was loaded or flushed.
+     */
+    private boolean dirty;
+
+    /**
+     * Number of URLs of the sitemap while it is unloaded from memory,
+     * or <code>-1</code> if the URLs of the sitemap are in memory.
+     */
+    private int unloadedUrlCount = -1;
+
+    /**
+     * Running uncompressed size of the sitemap file in bytes: measured from the URLs in memory
+     * and updated with the exact size of every added or modified URL, or <code>-1</code> if it has not been
+     * measured since the sitemap was loaded or unloaded.
+     */
+    private long byteSize = -1;
+
     /**
      * Creates a new sitemap instance with an abstract or real file in filesystem.
      *
@@ -85,8 +138,10 @@ public class Sitemap {
         }
         this.file = file;
         this.baseUrl = baseUrl;
-        this.urls = new LinkedHashMap<>(2048);
+        this.urlStorage = UrlStorage.HEAP;
+        this.urls = urlStorage.createStore(file, baseUrl);
         this.maxUrls = DEFAULT_MAX_URLS;
+        this.maxFileSize = DEFAULT_MAX_FILE_SIZE;
     }
 
     /**
@@ -103,6 +158,128 @@ public class Sitemap {
         this.maxUrls = maxUrls;
     }
 
+    /**
+     * Sets the maximum uncompressed size of the sitemap file in bytes.
+     * A URL is not added if the flushed file would exceed this size, unless the sitemap is empty;
+     * a sitemap index then adds it to another sitemap. Likewise, a URL is not modified if the modification
+     * would make the flushed file exceed this size. A smaller size than the specification allows
+     * can be used to keep the files small, e.g. for caching. By default, the maximum is 50 MB.
+     *
+     * @param maxFileSize the maximum file size in bytes
+     * @throws IllegalArgumentException if the maximum file size is not positive or is greater
+     *                                  than the possible value from the specification
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        if (maxFileSize <= 0 || maxFileSize > DEFAULT_MAX_FILE_SIZE) {
+            throw new IllegalArgumentException("Parameter 'maxFileSize' must be positive and cannot exceed 50 MB");
+        }
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Sets how the URLs of the sitemap are kept in memory.
+     * Any of the built-in {@link UrlStorage} values or a custom {@link UrlStoreFactory} can be used.
+     * URLs that are already in the sitemap are moved to the new storage.
+     * Setting the current storage again has no effect.
+     *
+     * @param urlStorage the URL storage
+     * @throws NullPointerException if the URL storage is <code>null</code>
+     */
+    public void setUrlStorage(UrlStoreFactory urlStorage) {
+        if (isNull(urlStorage)) {
+            throw new NullPointerException("Parameter 'urlStorage' must not be null");
+        }
+        if (urlStorage.equals(this.urlStorage)) {
+            return;
+        }
+
+        // The URLs are copied before the new store is created: a new store may open the same files
+        // as the current one and clear them.
+        UrlStore currentUrls = new HeapUrlStore();
+        for (SitemapIndex.Url url: urls) {
+            currentUrls.put(url);
+        }
+        UrlStore store = urlStorage.createStore(file, baseUrl);
+        for (SitemapIndex.Url url: currentUrls) {
+            store.put(url);
+        }
+        this.urls = store;
+        this.urlStorage = urlStorage;
+    }
+
+    /**
+     * Sets a customizer of the XML input factories used to load all sitemaps and sitemap indexes.
+     * Factories are created once per thread and reused for every load;
+     * by default they are coalescing and have DTDs and external entities disabled.
+     * The customizer is applied after the defaults, so it can change them or set implementation-specific properties.
+     * Setting a new customizer discards the cached factories.
+     *
+     * @param customizer the customizer of the XML input factories
+     * @throws NullPointerException if the customizer is <code>null</code>
+     */
+    public static void setXMLInputFactoryCustomizer(Consumer<? super XMLInputFactory> customizer) {
+        if (isNull(customizer)) {
+            throw new NullPointerException("Parameter 'customizer' must not be null");
+        }
+        XMLInputFactories.setCustomizer(customizer);
+    }
+
+    /**
+     * Sets the size of the buffer used to read the files of all sitemaps and sitemap indexes.
+     * By default, the buffer size is 64 KB.
+     *
+     * @param readBufferSize the buffer size in bytes
+     * @throws IllegalArgumentException if the buffer size is less than 1
+     */
+    public static void setReadBufferSize(int readBufferSize) {
+        if (readBufferSize < 1) {
+            throw new IllegalArgumentException("Parameter 'readBufferSize' must be at least 1");
+        }
+        XMLInputFactories.setReadBufferSize(readBufferSize);
+    }
+
+    /**
+     * Sets the file size from which uncompressed files of all sitemaps and sitemap indexes
+     * are mapped into memory and parsed straight from the mapping instead of being read through a stream.
+     * Mapping avoids a system call and a copy per buffer, but costs more than reading for small files.
+     * By default, files of 1 MB and larger are mapped; {@link Long#MAX_VALUE} disables mapping.
+     *
+     * @param mappedReadThreshold the file size in bytes
+     * @throws IllegalArgumentException if the file size is negative
+     */
+    public static void setMappedReadThreshold(long mappedReadThreshold) {
+        if (mappedReadThreshold < 0) {
+            throw new IllegalArgumentException("Parameter 'mappedReadThreshold' must not be negative");
+        }
+        XMLInputFactories.setMappedReadThreshold(mappedReadThreshold);
+    }
+
+    /**
+     * Sets whether the sitemap file is loaded by scanning its raw UTF-8 bytes instead of with an XML parser.
+     * The fast loader recognizes only the plain sitemap grammar as written by this library and
+     * is intended for trusted, machine-written files. On anything else, such as comments, CDATA sections
+     * or extension elements, it falls back to the XML parser. By default, the XML parser is used.
+     * Validated loads always use the XML parser, which validates the file while reading it.
+     *
+     * @param fastLoading <code>true</code> to load the sitemap file with the fast loader
+     */
+    public void setFastLoading(boolean fastLoading) {
+        this.fastLoading = fastLoading;
+    }
+
+    /**
+     * Sets whether a large uncompressed sitemap file is parsed in parallel by the fast loader.
+     * The file is split into chunks on <tt>url</tt> end tags, the chunks are parsed in the common
+     * fork/join pool and the URLs are merged in their original order.
+     * Applies only if fast loading is enabled. By default, files are parsed by a single thread.
+     *
+     * @param parallelParsing <code>true</code> to parse large files in parallel
+     * @see #setFastLoading(boolean)
+     */
+    public void setParallelParsing(boolean parallelParsing) {
+        this.parallelParsing = parallelParsing;
+    }
+
     /**
      * Represents the main factory method for creating URL.
      * If base url is specified then it will be added as a prefix
@@ -138,21 +315,58 @@ public class Sitemap {
     /**
      * Performs to load the current state of the sitemap from a file.
      * Method will load if the file really exists in the file system.
+     * Method will not load if the URLs are kept in a persistent store that is synchronized with the file.
      * This method is part of the life cycle of working with a sitemap.
      *
-     * @param validate indicates whether to validate the sitemap
+     * @param validate indicates whether to validate the sitemap against the XML schema
      * @throws SitemapNotValidException if the sitemap has not passed the validation stage
      * @throws SitemapNotLoadedException if errors occurred while loading the sitemap
+     * @see #load(ValidationLevel)
      */
     public void load(boolean validate) {
+        load(validate ? ValidationLevel.XSD : ValidationLevel.NONE);
+    }
+
+    /**
+     * Performs to load the current state of the sitemap from a file.
+     * Method will load if the file really exists in the file system.
+     * Method will not load if the URLs are kept in a persistent store that is synchronized with the file.
+     * This method is part of the life cycle of working with a sitemap.
+     * The sitemap is validated while it is loaded, so the file is read only once;
+     * if the validation fails, the sitemap is left empty.
+     *
+     * @param validationLevel indicates how thoroughly to validate the sitemap
+     * @throws NullPointerException if the validation level is <code>null</code>
+     * @throws SitemapNotValidException if the sitemap has not passed the validation stage
+     * @throws SitemapNotLoadedException if errors occurred while loading the sitemap
+     */
+    public void load(ValidationLevel validationLevel) {
+        if (isNull(validationLevel)) {
+            throw new NullPointerException("Parameter 'validationLevel' must not be null");
+        }
+        unloadedUrlCount = -1;
+        byteSize = -1;
+        if (isStoreSynchronized()) {
+            dirty = false;
+            return;
+        }
         if (file.exists()) {
-            if (validate) {
-                new SitemapValidator().validate(file);
-            }
             urls.clear();
 
-            new SitemapLoader().load(file, urls);
+            SitemapLoader loader;
+            if (validationLevel == ValidationLevel.XSD) {
+                loader = new ValidatingSitemapLoader();
+            }
+            else {
+                loader = fastLoading ? new FastSitemapLoader(parallelParsing) : new SitemapLoader();
+            }
+            if (validationLevel != ValidationLevel.NONE) {
+                loader = new StructuralValidatingLoader(loader);
+            }
+            loader.load(file, urls);
+            synchronizeStore();
         }
+        dirty = false;
     }
 
     /**
@@ -188,13 +402,19 @@ public class Sitemap {
         if (isNull(url)) {
             throw new NullPointerException("Parameter 'url' must not be null");
         }
-        if (urls.size() < maxUrls) {
+        if (!isFull()) {
             String loc = url.getLoc();
-            if (urls.containsKey(loc)) {
+            if (urls.contains(loc)) {
                 throw new SitemapAlreadyContainsUrlException(loc);
             }
 
-            urls.put(loc, url);
+            long urlSize = FLUSHER.measureUrl(url);
+            if (getByteSize() + urlSize > maxFileSize && getUrlCount() > 0) {
+                return false;
+            }
+            urls.put(url);
+            byteSize += urlSize;
+            dirty = true;
             return true;
         }
         return false;
@@ -204,7 +424,9 @@ public class Sitemap {
      * Modifies the URL in the sitemap. URL be to modify only if existing in current sitemap.
      *
      * @param url URL to modify
-     * @return <code>true</code> if the URL is modified successfully
+     * @return <code>true</code> if the URL is modified successfully;
+     *         URL will not be modified if it does not exist in the sitemap
+     *         or the modified URL would exceed the maximum file size
      * @throws NullPointerException if URL is <code>null</code>
      */
     public boolean modifyUrl(Url url) {
@@ -212,8 +434,18 @@ public class Sitemap {
             throw new NullPointerException("Parameter 'url' must not be null");
         }
 
-        SitemapIndex.Url prevUrl = urls.replace(url.getLoc(), url);
-        return nonNull(prevUrl);
+        SitemapIndex.Url prevUrl = urls.get(url.getLoc());
+        if (isNull(prevUrl)) {
+            return false;
+        }
+        long urlSizeChange = FLUSHER.measureUrl(url) - FLUSHER.measureUrl(prevUrl);
+        if (urlSizeChange > 0 && getByteSize() + urlSizeChange > maxFileSize) {
+            return false;
+        }
+        urls.replace(url);
+        byteSize = getByteSize() + urlSizeChange;
+        dirty = true;
+        return true;
     }
 
     /**
@@ -223,8 +455,115 @@ public class Sitemap {
      * @throws SitemapNotFlushedException if errors occurred while flushing the sitemap
      */
     public void flush() {
-        new SitemapFlusher().flush(urls.values(), file);
-        urls.clear();
+        long flushedSize = FLUSHER.flush(urls, file);
+        if (urls instanceof PersistentUrlStore) {
+            synchronizeStore();
+            byteSize = flushedSize;
+        }
+        else {
+            urls.clear();
+            byteSize = FLUSHER.measureEmpty();
+        }
+        dirty = false;
+    }
+
+    /**
+     * Releases the URLs of the sitemap from memory.
+     * If the sitemap has been modified, it is flushed to its file first,
+     * so the same state can be loaded again later.
+     *
+     * @throws SitemapNotFlushedException if errors occurred while flushing the sitemap
+     */
+    void unload() {
+        int urlCount = urls.size();
+        if (dirty) {
+            flush();
+        }
+        else if (!(urls instanceof PersistentUrlStore)) {
+            urls.clear();
+        }
+        unloadedUrlCount = urlCount;
+        byteSize = -1;
+    }
+
+    /**
+     * Marks the sitemap as unloaded from memory while its file contains the given number of URLs,
+     * so it is loaded from the file on the next access.
+     *
+     * @param urlCount the number of URLs in the sitemap file
+     */
+    void markUnloaded(int urlCount) {
+        dirty = false;
+        unloadedUrlCount = urlCount;
+        byteSize = -1;
+    }
+
+    /**
+     * Returns <code>true</code> if the sitemap has been modified since it was loaded or flushed.
+     *
+     * @return <code>true</code> if the sitemap has unflushed modifications
+     */
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the number of URLs in the sitemap, including a sitemap that is unloaded from memory.
+     *
+     * @return the number of URLs
+     */
+    int getUrlCount() {
+        return unloadedUrlCount >= 0 ? unloadedUrlCount : urls.size();
+    }
+
+    /**
+     * Returns <code>true</code> if the URLs are kept in a persistent store
+     * that is synchronized with the current state of the sitemap file.
+     *
+     * @return <code>true</code> if the sitemap file does not need to be loaded
+     */
+    boolean isStoreSynchronized() {
+        return (urls instanceof PersistentUrlStore) && ((PersistentUrlStore) urls).isSynchronizedWith(file);
+    }
+
+    private void synchronizeStore() {
+        if (urls instanceof PersistentUrlStore) {
+            ((PersistentUrlStore) urls).synchronizeWith(file);
+        }
+    }
+
+    /**
+     * Returns the uncompressed size of the sitemap file in bytes as it would be flushed now.
+     * After loading, the URLs in memory are measured once, so the size is exact regardless of
+     * how the file was written. The size of a sitemap that is unloaded from memory is taken from its file.
+     *
+     * @return the size of the sitemap file in bytes
+     */
+    long getByteSize() {
+        if (byteSize < 0) {
+            if (unloadedUrlCount >= 0) {
+                byteSize = file.exists() ? StructuralValidatingLoader.getUncompressedSize(file) : FLUSHER.measureEmpty();
+            }
+            else {
+                byteSize = FLUSHER.measureEmpty();
+                for (SitemapIndex.Url url: urls) {
+                    byteSize += FLUSHER.measureUrl(url);
+                }
+            }
+        }
+        return byteSize;
+    }
+
+    /**
+     * Returns <code>true</code> if this sitemap has reached the maximum number of URLs
+     * or has no space left for even the smallest URL within the maximum file size.
+     * A sitemap that is not full may still reject a URL that is too large for the space left.
+     *
+     * @return <code>true</code> if no more URLs can be added to this sitemap
+     */
+    boolean isFull() {
+        int urlCount = getUrlCount();
+        return urlCount >= maxUrls || urlCount > 0 && getByteSize() + MIN_URL_SIZE > maxFileSize;
     }
 
     /**
@@ -234,7 +573,7 @@ public class Sitemap {
      * @return <code>true</code> if sitemap contain the URL
      */
     protected boolean containsUrl(Url url) {
-        return urls.containsKey(url.getLoc());
+        return urls.contains(url.getLoc());
     }
 
     /**
@@ -259,7 +598,7 @@ public class Sitemap {
          */
         private Float priority;
 
-        Url(String loc) {
+        public Url(String loc) {
             super(loc);
         }
 
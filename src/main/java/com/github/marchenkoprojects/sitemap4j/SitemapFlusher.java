@@ -6,35 +6,112 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Collection;
+import java.io.UncheckedIOException;
 import java.util.zip.GZIPOutputStream;
 
+import static java.util.Objects.nonNull;
+
 /**
+ * Flusher of sitemap files. The URLs are encoded straight into the buffer of a {@link Utf8XmlWriter}
+ * and written as UTF-8 in large blocks, independently of the platform default charset.
+ *
  * @author Oleg Marchenko
  */
 class SitemapFlusher {
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    private static final String[] CHANGEFREQ_NAMES = new String[ChangeFreq.values().length];
+    static {
+        for (ChangeFreq changefreq: ChangeFreq.values()) {
+            CHANGEFREQ_NAMES[changefreq.ordinal()] = changefreq.name().toLowerCase();
+        }
+    }
 
-    void flush(Collection<Url> urls, File file) {
-        try {
-            OutputStream os = new FileOutputStream(file);
-            if (file.getName().endsWith(".gz")) {
-                os = new GZIPOutputStream(os);
-            }
+    /**
+     * Per-thread writers that discard their output, used to measure the serialized size of URLs.
+     */
+    private static final ThreadLocal<Utf8XmlWriter> MEASURING_WRITERS =
+            ThreadLocal.withInitial(() -> new Utf8XmlWriter(new DiscardingOutputStream()));
 
-            os.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n".getBytes());
-            os.write(getStartRootTag().getBytes());
+    /**
+     * Writes the URLs to the file.
+     *
+     * @return the uncompressed size of the written file in bytes
+     */
+    long flush(UrlStore urls, File file) {
+        try (Utf8XmlWriter writer = new Utf8XmlWriter(openOutputStream(file))) {
+            writeStart(writer);
             for (Url url: urls) {
-                os.write(url.toString().getBytes());
+                writeUrl(writer, url);
             }
-            os.write(getEndRootTag().getBytes());
-            os.flush();
-            os.close();
+            writeEnd(writer);
+            return writer.getByteCount();
         }
         catch (IOException e) {
             throw new SitemapNotFlushedException(e);
         }
     }
 
+    /**
+     * Returns the exact number of bytes the URL takes in a flushed file.
+     *
+     * @param url URL to measure
+     * @return serialized size of the URL in bytes
+     */
+    long measureUrl(Url url) {
+        Utf8XmlWriter writer = MEASURING_WRITERS.get();
+        long start = writer.getByteCount();
+        try {
+            writeUrl(writer, url);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.getByteCount() - start;
+    }
+
+    /**
+     * Returns the number of bytes a flushed file takes without any URLs.
+     *
+     * @return serialized size of an empty file in bytes
+     */
+    long measureEmpty() {
+        return XML_DECLARATION.length() + getStartRootTag().length() + getEndRootTag().length();
+    }
+
+    void writeStart(Utf8XmlWriter writer) throws IOException {
+        writer.writeMarkup(XML_DECLARATION);
+        writer.writeMarkup(getStartRootTag());
+    }
+
+    void writeEnd(Utf8XmlWriter writer) throws IOException {
+        writer.writeMarkup(getEndRootTag());
+    }
+
+    protected void writeUrl(Utf8XmlWriter writer, Url url) throws IOException {
+        writer.writeMarkup("\t<url>\n\t\t<loc>");
+        writer.writeText(url.getLoc());
+        writer.writeMarkup("</loc>\n");
+        if (nonNull(url.getLastmod())) {
+            writer.writeMarkup("\t\t<lastmod>");
+            writer.writeLastmod(url.getLastmod());
+            writer.writeMarkup("</lastmod>\n");
+        }
+        if (url instanceof Sitemap.Url) {
+            Sitemap.Url sitemapUrl = (Sitemap.Url) url;
+            if (nonNull(sitemapUrl.getChangefreq())) {
+                writer.writeMarkup("\t\t<changefreq>");
+                writer.writeMarkup(CHANGEFREQ_NAMES[sitemapUrl.getChangefreq().ordinal()]);
+                writer.writeMarkup("</changefreq>\n");
+            }
+            if (nonNull(sitemapUrl.getPriority())) {
+                writer.writeMarkup("\t\t<priority>");
+                writer.writePriority(sitemapUrl.getPriority());
+                writer.writeMarkup("</priority>\n");
+            }
+        }
+        writer.writeMarkup("\t</url>\n");
+    }
+
     protected String getStartRootTag() {
         return "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n";
     }
@@ -42,4 +119,29 @@ class SitemapFlusher {
     protected String getEndRootTag() {
         return "</urlset>";
     }
+
+    static OutputStream openOutputStream(File file) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            try {
+                return new GZIPOutputStream(os, Utf8XmlWriter.BUFFER_SIZE);
+            }
+            catch (IOException e) {
+                os.close();
+                throw e;
+            }
+        }
+        return os;
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+        }
+    }
 }
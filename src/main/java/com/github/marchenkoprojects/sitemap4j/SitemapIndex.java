@@ -5,11 +5,22 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import static java.time.ZoneOffset.UTC;
+import static java.util.Comparator.comparingInt;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
@@ -58,6 +69,73 @@ public class SitemapIndex extends Sitemap {
      */
     private final Map<String, Sitemap> sitemaps;
 
+    /**
+     * Locations of the registered sitemaps in registration order.
+     * The position of a sitemap in this list is its number in the URL registry.
+     */
+    private final List<String> sitemapLocs;
+
+    /**
+     * Index-wide registry of all URLs in the registered sitemaps.
+     * Maps the location of each URL to the number of the sitemap that contains it,
+     * so a duplicate check or a modification needs only one lookup regardless of the number of sitemaps.
+     */
+    private LocRegistry locRegistry;
+
+    /**
+     * Numbers of the registered sitemaps that still have free capacity.
+     * The order of the queue is defined by the current placement policy.
+     */
+    private Queue<Integer> availableSitemaps;
+
+    /**
+     * Indicates how the sitemap for a new URL is chosen among the available sitemaps.
+     */
+    private PlacementPolicy placementPolicy;
+
+    /**
+     * Numbers of the registered sitemaps that have never been loaded from their files.
+     * URLs of these sitemaps are not present in the URL registry.
+     */
+    private final BitSet unindexedSitemaps;
+
+    /**
+     * Registered sitemaps whose URLs are currently in memory, from the least to the most recently used.
+     */
+    private final LinkedHashMap<Integer, Sitemap> loadedSitemaps;
+
+    /**
+     * Indicates the maximum number of registered sitemaps whose URLs are kept in memory at once.
+     */
+    private int maxLoadedSitemaps;
+
+    /**
+     * Indicates whether the registered sitemaps are loaded only when they are needed.
+     */
+    private boolean lazyLoading;
+
+    /**
+     * Executor used to load the registered sitemaps concurrently,
+     * or <code>null</code> to load them one after another.
+     */
+    private Executor executor;
+
+    /**
+     * Indicates whether a binary sidecar with the location hashes of all registered sitemaps
+     * is written while flushing and used while loading.
+     */
+    private boolean sidecarEnabled;
+
+    /**
+     * Indicates how thoroughly the registered sitemaps are validated when they are loaded.
+     */
+    private ValidationLevel sitemapValidationLevel = ValidationLevel.NONE;
+
+    /**
+     * Indicates whether the entries of the sitemap index have been modified since it was loaded or flushed.
+     */
+    private boolean entriesModified;
+
     /**
      * Indicates the current sitemap filename prefix.
      * It used to create a new sitemap.
@@ -75,9 +153,130 @@ public class SitemapIndex extends Sitemap {
     public SitemapIndex(File file, String baseUrl) {
         super(file, baseUrl);
         this.sitemaps = new LinkedHashMap<>(32);
+        this.sitemapLocs = new ArrayList<>(32);
+        this.locRegistry = new LocRegistry(urlStorage.isOffHeap());
+        this.placementPolicy = PlacementPolicy.FILL_FIRST;
+        this.availableSitemaps = createAvailableSitemapQueue();
+        this.unindexedSitemaps = new BitSet();
+        this.loadedSitemaps = new LinkedHashMap<>(32, 0.75f, true);
+        this.maxLoadedSitemaps = Integer.MAX_VALUE;
         this.sitemapFilenamePrefix = DEFAULT_FILENAME_PREFIX;
     }
 
+    /**
+     * Sets how the URLs of all registered sitemaps are kept in memory.
+     * The sitemap index itself always keeps its entries on the heap;
+     * its index-wide URL registry follows the storage to off-heap memory if needed.
+     *
+     * @param urlStorage the URL storage
+     * @throws NullPointerException if the URL storage is <code>null</code>
+     */
+    @Override
+    public void setUrlStorage(UrlStoreFactory urlStorage) {
+        if (isNull(urlStorage)) {
+            throw new NullPointerException("Parameter 'urlStorage' must not be null");
+        }
+        this.urlStorage = urlStorage;
+        sitemaps.values().forEach(sitemap -> sitemap.setUrlStorage(urlStorage));
+
+        if (locRegistry.isOffHeap() != urlStorage.isOffHeap()) {
+            locRegistry = new LocRegistry(urlStorage.isOffHeap());
+            for (int sitemapNumber = 0; sitemapNumber < sitemapLocs.size(); sitemapNumber++) {
+                Sitemap sitemap = loadedSitemaps.get(sitemapNumber);
+                if (nonNull(sitemap)) {
+                    registerLocs(sitemapNumber, sitemap);
+                }
+                else {
+                    unindexedSitemaps.set(sitemapNumber);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the policy used to choose the sitemap for a new URL.
+     * By default, the first available sitemap is filled before the next one is used.
+     *
+     * @param placementPolicy the placement policy
+     * @throws NullPointerException if the placement policy is <code>null</code>
+     */
+    public void setPlacementPolicy(PlacementPolicy placementPolicy) {
+        if (isNull(placementPolicy)) {
+            throw new NullPointerException("Parameter 'placementPolicy' must not be null");
+        }
+        this.placementPolicy = placementPolicy;
+        this.availableSitemaps = createAvailableSitemapQueue();
+        refillAvailableSitemaps();
+    }
+
+    /**
+     * Sets whether the registered sitemaps are loaded lazily.
+     * In lazy mode the sitemap index registers all sitemaps from its entries while loading,
+     * but each sitemap is loaded from its file only the first time it is needed to add, modify or find a URL.
+     * Sitemaps that have never been loaded are not rewritten while flushing.
+     *
+     * <p> Note that a new URL has to be checked against every sitemap, so the first URL that is added,
+     * modified or found scans the files of all sitemaps that have not been scanned yet.
+     * The scan only registers the location hashes of their URLs, without keeping the sitemaps in memory;
+     * afterwards a sitemap is loaded only to add a URL to it or when it may contain the requested URL.
+     * Enable the sidecar file to route URLs without scanning the sitemap files at all.
+     * Applies to the next loading of the sitemap index.
+     *
+     * @param lazyLoading <code>true</code> to load the registered sitemaps lazily
+     */
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    /**
+     * Sets the maximum number of registered sitemaps whose URLs are kept in memory at once.
+     * When the limit is exceeded, the least recently used sitemap is unloaded:
+     * it is flushed to its file if it has been modified and loaded again transparently on the next access.
+     * The URL registry keeps only hashes of the unloaded URLs, so a sitemap is loaded again
+     * only when it may contain the requested URL. By default, the number is not limited.
+     *
+     * @param maxLoadedSitemaps the maximum number of loaded sitemaps
+     * @throws IllegalArgumentException if the maximum number of loaded sitemaps is less than 1
+     */
+    public void setMaxLoadedSitemaps(int maxLoadedSitemaps) {
+        if (maxLoadedSitemaps < 1) {
+            throw new IllegalArgumentException("Parameter 'maxLoadedSitemaps' must be at least 1");
+        }
+        this.maxLoadedSitemaps = maxLoadedSitemaps;
+        evictLoadedSitemaps(-1);
+    }
+
+    /**
+     * Sets the executor used to load and flush the registered sitemaps concurrently.
+     * Sitemaps that are loaded while the sitemap index is loaded are then loaded and validated in parallel
+     * and registered in the order of the sitemap index. If any of them fail, the loading of the sitemap index fails
+     * once all of them have finished, with the failure of every sitemap file attached as a suppressed exception.
+     * Sitemaps loaded later, on demand, are loaded by the calling thread.
+     * Likewise, the loaded sitemaps are serialized and compressed in parallel while flushing,
+     * and the sitemap index file is written only if all of them have succeeded.
+     * By default, the executor is <code>null</code> and the sitemaps are loaded and flushed one after another.
+     *
+     * @param executor the executor or <code>null</code> to load and flush the sitemaps sequentially
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets whether a binary sidecar file is kept next to the sitemap index file.
+     * The sidecar contains the location hashes of all registered sitemaps and is written while flushing.
+     * While loading, the sitemap index then parses only its own file: URLs are routed to the registered sitemaps
+     * by the sidecar and each sitemap is loaded from its file only when it is needed to add, modify or find a URL.
+     * Sitemaps whose files have changed since the sidecar was written are loaded as usual;
+     * a damaged sidecar or one written for another state of the sitemap index file is ignored.
+     * By default, the sidecar is not used.
+     *
+     * @param sidecarEnabled <code>true</code> to write and use the sidecar file
+     */
+    public void setSidecarEnabled(boolean sidecarEnabled) {
+        this.sidecarEnabled = sidecarEnabled;
+    }
+
     /**
      * Sets the sitemap filename prefix.
      *
@@ -90,40 +289,114 @@ public class SitemapIndex extends Sitemap {
     /**
      * Performs to load the current state of the sitemap index and all registered sitemaps in it.
      * Method will load if the file really exists in the file system.
+     * If lazy loading is enabled, the registered sitemaps are loaded later when they are needed.
+     * If the sidecar file is enabled and up to date, the sitemaps described by it are not loaded either.
      * This method is part of the life cycle of working with a sitemap index or sitemap.
+     * Every file is validated while it is loaded, so it is read only once.
      *
-     * @param validate indicates whether to validate the sitemap index and all registered sitemaps in it
+     * @param validationLevel indicates how thoroughly to validate the sitemap index and all registered sitemaps in it
+     * @throws NullPointerException if the validation level is <code>null</code>
      * @throws SitemapNotValidException if the sitemap index or any sitemaps in it did not passed the validation stage
-     * @throws SitemapNotLoadedException if errors occurred while loading the sitemap index or any sitemaps in it
+     * @throws SitemapNotLoadedException if errors occurred while loading the sitemap index or any sitemaps in it;
+     *                                   if sitemaps are loaded concurrently, the failures of all sitemaps
+     *                                   are attached as suppressed exceptions
      */
     @Override
-    public void load(boolean validate) {
+    public void load(ValidationLevel validationLevel) {
+        if (isNull(validationLevel)) {
+            throw new NullPointerException("Parameter 'validationLevel' must not be null");
+        }
         if (file.exists()) {
-            if (validate) {
-                new SitemapIndexValidator().validate(file);
-            }
             urls.clear();
+            entriesModified = false;
+            sitemaps.clear();
+            sitemapLocs.clear();
+            locRegistry.clear();
+            unindexedSitemaps.clear();
+            loadedSitemaps.clear();
+            sitemapValidationLevel = validationLevel;
+
+            SitemapLoader loader = validationLevel == ValidationLevel.XSD
+                    ? new ValidatingSitemapIndexLoader()
+                    : new SitemapIndexLoader();
+            if (validationLevel != ValidationLevel.NONE) {
+                loader = new StructuralValidatingLoader(loader);
+            }
+            loader.load(file, urls);
+            SitemapIndexSidecar sidecar = sidecarEnabled ? SitemapIndexSidecar.read(file) : null;
+            List<Integer> loadingSitemapNumbers = new ArrayList<>();
+
+            for (Url url: urls) {
+                String sitemapLoc = url.getLoc();
+                String filename = sitemapLoc.substring(sitemapLoc.lastIndexOf('/') + 1);
+
+                Sitemap sitemap = createSitemap(filename);
+                int sitemapNumber = registerSitemap(sitemapLoc, sitemap);
+                if (nonNull(sidecar) && sidecar.isCurrent(sitemapNumber, sitemapLoc, sitemap.file)) {
+                    sidecar.registerLocs(sitemapNumber, locRegistry);
+                    sitemap.markUnloaded(sidecar.getUrlCount(sitemapNumber));
+                }
+                else if (lazyLoading) {
+                    unindexedSitemaps.set(sitemapNumber);
+                }
+                else {
+                    loadingSitemapNumbers.add(sitemapNumber);
+                }
+            }
 
-            new SitemapIndexLoader().load(file, urls);
+            if (nonNull(executor) && loadingSitemapNumbers.size() > 1) {
+                loadConcurrently(loadingSitemapNumbers, validationLevel);
+                for (int sitemapNumber: loadingSitemapNumbers) {
+                    registerLocs(sitemapNumber, getSitemap(sitemapNumber));
+                    markLoaded(sitemapNumber, getSitemap(sitemapNumber));
+                }
+            }
+            else {
+                for (int sitemapNumber: loadingSitemapNumbers) {
+                    Sitemap sitemap = getSitemap(sitemapNumber);
+                    sitemap.load(validationLevel);
+                    registerLocs(sitemapNumber, sitemap);
+                    markLoaded(sitemapNumber, sitemap);
+                }
+            }
+            refillAvailableSitemaps();
+        }
+    }
 
-            for (String url: urls.keySet()) {
-                String filename = url.substring(url.lastIndexOf('/') + 1);
+    private void loadConcurrently(List<Integer> sitemapNumbers, ValidationLevel validationLevel) {
+        List<CompletableFuture<Void>> loadings = new ArrayList<>(sitemapNumbers.size());
+        for (int sitemapNumber: sitemapNumbers) {
+            Sitemap sitemap = getSitemap(sitemapNumber);
+            loadings.add(CompletableFuture.runAsync(() -> sitemap.load(validationLevel), executor));
+        }
 
-                Sitemap sitemap = new Sitemap(new File(getBaseDir() + filename), baseUrl);
-                sitemap.setMaxUrls(maxUrls);
-                sitemap.load(validate);
-                sitemaps.put(url, sitemap);
+        List<RuntimeException> failures = new ArrayList<>();
+        for (int i = 0; i < loadings.size(); i++) {
+            try {
+                loadings.get(i).join();
             }
+            catch (CompletionException | CancellationException e) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                String filename = getSitemap(sitemapNumbers.get(i)).file.getName();
+                failures.add(new SitemapNotLoadedException(filename, cause));
+            }
+        }
+        if (!failures.isEmpty()) {
+            SitemapNotLoadedException exception = new SitemapNotLoadedException(
+                    failures.size() + " of " + sitemapNumbers.size() + " sitemaps failed to load");
+            failures.forEach(exception::addSuppressed);
+            throw exception;
         }
     }
 
     /**
-     * Adds a new URL to the first available sitemap registered in sitemap index.
+     * Adds a new URL to an available sitemap registered in sitemap index.
+     * The sitemap is chosen according to the current placement policy.
      * If there are no available sitemaps than new sitemap will be created and added to sitemap index.
      * If base URL are present that this method can accept part of URL without part of base URL.
      *
-     * @param url new URL to add to the first available sitemap
-     * @return <code>true</code> if the URL is successfully added to the first available sitemap
+     * @param url new URL to add to an available sitemap
+     * @return <code>true</code> if the URL is successfully added to an available sitemap
      * @throws NullPointerException if URL is <code>null</code>
      * @throws SitemapAlreadyContainsUrlException if this URL already exists in the any sitemap registered in sitemap index
      */
@@ -133,38 +406,186 @@ public class SitemapIndex extends Sitemap {
             throw new NullPointerException("Parameter 'url' must not be null");
         }
 
-        for (Sitemap sitemap: sitemaps.values()) {
-            if (sitemap.containsUrl(url)) {
-                throw new SitemapAlreadyContainsUrlException(sitemap.file.getName() + " [" + url.getLoc() + "]");
-            }
+        int existingSitemapNumber = findSitemapNumber(url.getLoc());
+        if (existingSitemapNumber >= 0) {
+            Sitemap sitemap = getSitemap(existingSitemapNumber);
+            throw new SitemapAlreadyContainsUrlException(sitemap.file.getName() + " [" + url.getLoc() + "]");
         }
 
-        boolean urlAdded = false;
-        for (Entry<String, Sitemap> urlToSitemap: sitemaps.entrySet()) {
-            Sitemap sitemap = urlToSitemap.getValue();
-            if (sitemap.addUrl(url)) {
-                Url currentUrl = urls.get(urlToSitemap.getKey());
-                currentUrl.setLastmod(LocalDateTime.now());
+        int targetSitemapNumber = -1;
+        List<Integer> skippedSitemaps = new ArrayList<>(0);
+        while (targetSitemapNumber < 0 && !availableSitemaps.isEmpty()) {
+            boolean fillFirst = placementPolicy == PlacementPolicy.FILL_FIRST;
+            int sitemapNumber = fillFirst ? availableSitemaps.peek() : availableSitemaps.poll();
+
+            Sitemap sitemap = getLoadedSitemap(sitemapNumber);
+            boolean urlAdded = sitemap.addUrl(url);
+            if (urlAdded) {
+                touchSitemapUrl(sitemapNumber);
+                targetSitemapNumber = sitemapNumber;
+            }
 
-                urlAdded = true;
-                break;
+            boolean full = sitemap.isFull();
+            if (fillFirst && (!urlAdded || full)) {
+                availableSitemaps.poll();
+            }
+            if (!urlAdded && !full) {
+                // The URL is too large for the space left, but smaller URLs may still fit
+                skippedSitemaps.add(sitemapNumber);
+            }
+            else if (!fillFirst && urlAdded && !full) {
+                availableSitemaps.offer(sitemapNumber);
             }
         }
-        if (!urlAdded) {
+        if (!skippedSitemaps.isEmpty()) {
+            restoreSkippedSitemaps(skippedSitemaps);
+        }
+        if (targetSitemapNumber < 0) {
             String sitemapFilename = generateSitemapFilename();
 
             Url newSitemapUrl = new Url(getBaseUrl() + sitemapFilename);
             newSitemapUrl.setLastmod(LocalDateTime.now());
-            urls.put(newSitemapUrl.getLoc(), newSitemapUrl);
+            urls.put(newSitemapUrl);
+            entriesModified = true;
 
-            Sitemap sitemap = new Sitemap(new File(getBaseDir() + sitemapFilename), baseUrl);
-            sitemap.setMaxUrls(maxUrls);
+            Sitemap sitemap = createSitemap(sitemapFilename);
             sitemap.addUrl(url);
-            sitemaps.put(newSitemapUrl.getLoc(), sitemap);
+            targetSitemapNumber = registerSitemap(newSitemapUrl.getLoc(), sitemap);
+            markLoaded(targetSitemapNumber, sitemap);
+            if (!sitemap.isFull()) {
+                availableSitemaps.offer(targetSitemapNumber);
+            }
         }
+        locRegistry.register(url.getLoc(), targetSitemapNumber);
         return true;
     }
 
+    private Sitemap createSitemap(String filename) {
+        Sitemap sitemap = new Sitemap(new File(getBaseDir() + filename), baseUrl);
+        sitemap.setMaxUrls(maxUrls);
+        sitemap.setMaxFileSize(maxFileSize);
+        sitemap.setUrlStorage(urlStorage);
+        sitemap.setFastLoading(fastLoading);
+        sitemap.setParallelParsing(parallelParsing);
+        return sitemap;
+    }
+
+    private int registerSitemap(String sitemapLoc, Sitemap sitemap) {
+        sitemaps.put(sitemapLoc, sitemap);
+        sitemapLocs.add(sitemapLoc);
+        return sitemapLocs.size() - 1;
+    }
+
+    private void registerLocs(int sitemapNumber, Sitemap sitemap) {
+        sitemap.urls.forEachLoc(loc -> locRegistry.register(loc, sitemapNumber));
+    }
+
+    private Sitemap getSitemap(int sitemapNumber) {
+        return sitemaps.get(sitemapLocs.get(sitemapNumber));
+    }
+
+    private Sitemap getLoadedSitemap(int sitemapNumber) {
+        Sitemap sitemap = loadedSitemaps.get(sitemapNumber);
+        if (isNull(sitemap)) {
+            sitemap = getSitemap(sitemapNumber);
+            sitemap.load(sitemapValidationLevel);
+            if (unindexedSitemaps.get(sitemapNumber)) {
+                registerLocs(sitemapNumber, sitemap);
+                unindexedSitemaps.clear(sitemapNumber);
+                reorderAvailableSitemap(sitemapNumber, sitemap);
+            }
+            markLoaded(sitemapNumber, sitemap);
+        }
+        return sitemap;
+    }
+
+    /**
+     * Registers the locations of a sitemap that has never been loaded by scanning its file,
+     * without keeping its URLs in memory. The sitemap stays unloaded until it is needed,
+     * but its number of URLs is known from now on.
+     */
+    private void indexSitemap(int sitemapNumber) {
+        Sitemap sitemap = getSitemap(sitemapNumber);
+        int[] urlCount = new int[1];
+        if (sitemap.file.exists()) {
+            try (SitemapReader reader = new SitemapReader(sitemap.file)) {
+                reader.accept((loc, lastmod, changefreq, priority) -> {
+                    locRegistry.register(loc, sitemapNumber);
+                    urlCount[0]++;
+                });
+            }
+        }
+        sitemap.markUnloaded(urlCount[0]);
+        unindexedSitemaps.clear(sitemapNumber);
+    }
+
+    private void reorderAvailableSitemap(int sitemapNumber, Sitemap sitemap) {
+        if (placementPolicy == PlacementPolicy.LEAST_LOADED && availableSitemaps.remove(sitemapNumber)) {
+            if (!sitemap.isFull()) {
+                availableSitemaps.offer(sitemapNumber);
+            }
+        }
+    }
+
+    private void markLoaded(int sitemapNumber, Sitemap sitemap) {
+        loadedSitemaps.put(sitemapNumber, sitemap);
+        evictLoadedSitemaps(sitemapNumber);
+    }
+
+    private void evictLoadedSitemaps(int retainedSitemapNumber) {
+        Iterator<Map.Entry<Integer, Sitemap>> iterator = loadedSitemaps.entrySet().iterator();
+        while (loadedSitemaps.size() > maxLoadedSitemaps && iterator.hasNext()) {
+            Map.Entry<Integer, Sitemap> numberToSitemap = iterator.next();
+            if (numberToSitemap.getKey() != retainedSitemapNumber) {
+                numberToSitemap.getValue().unload();
+                iterator.remove();
+            }
+        }
+    }
+
+    private int findSitemapNumber(String loc) {
+        if (!unindexedSitemaps.isEmpty()) {
+            for (int number = unindexedSitemaps.nextSetBit(0); number >= 0; number = unindexedSitemaps.nextSetBit(number + 1)) {
+                indexSitemap(number);
+            }
+            refillAvailableSitemaps();
+        }
+        return locRegistry.find(loc, number -> getLoadedSitemap(number).urls.contains(loc));
+    }
+
+    private void touchSitemapUrl(int sitemapNumber) {
+        Url sitemapUrl = urls.get(sitemapLocs.get(sitemapNumber));
+        sitemapUrl.setLastmod(LocalDateTime.now());
+        urls.put(sitemapUrl);
+        entriesModified = true;
+    }
+
+    private Queue<Integer> createAvailableSitemapQueue() {
+        if (placementPolicy == PlacementPolicy.LEAST_LOADED) {
+            return new PriorityQueue<>(32, comparingInt(sitemapNumber -> getSitemap(sitemapNumber).getUrlCount()));
+        }
+        return new ArrayDeque<>(32);
+    }
+
+    /**
+     * Returns the sitemaps that rejected a URL only for its size to the front of the available sitemaps,
+     * so they keep their turn for the next URLs.
+     */
+    private void restoreSkippedSitemaps(List<Integer> skippedSitemaps) {
+        skippedSitemaps.addAll(availableSitemaps);
+        availableSitemaps.clear();
+        skippedSitemaps.forEach(availableSitemaps::offer);
+    }
+
+    private void refillAvailableSitemaps() {
+        availableSitemaps.clear();
+        for (int sitemapNumber = 0; sitemapNumber < sitemapLocs.size(); sitemapNumber++) {
+            if (!getSitemap(sitemapNumber).isFull()) {
+                availableSitemaps.offer(sitemapNumber);
+            }
+        }
+    }
+
     private String generateSitemapFilename() {
         String filename = sitemapFilenamePrefix + (sitemaps.size() + 1) + SITEMAP_FILE_EXT;
         if (file.getName().endsWith(GZIP_FILE_EXT)) {
@@ -178,7 +599,8 @@ public class SitemapIndex extends Sitemap {
      * URL be to modify only if existing in any sitemaps registered in sitemap index..
      *
      * @param url URL to modify
-     * @return <code>true</code> if the URL is modified successfully
+     * @return <code>true</code> if the URL is modified successfully;
+     *         URL will not be modified if the modified URL would make its sitemap exceed the maximum file size
      * @throws NullPointerException if URL is <code>null</code>
      */
     @Override
@@ -186,27 +608,112 @@ public class SitemapIndex extends Sitemap {
         if (isNull(url)) {
             throw new NullPointerException("Parameter 'url' must not be null");
         }
-        for (Entry<String, Sitemap> urlToSitemap: sitemaps.entrySet()) {
-            Sitemap sitemap = urlToSitemap.getValue();
-            if (sitemap.modifyUrl(url)) {
-                Url currentUrl = urls.get(urlToSitemap.getKey());
-                currentUrl.setLastmod(LocalDateTime.now());
-                return true;
-            }
+        int sitemapNumber = findSitemapNumber(url.getLoc());
+        if (sitemapNumber < 0) {
+            return false;
+        }
+
+        Sitemap sitemap = getLoadedSitemap(sitemapNumber);
+        if (sitemap.modifyUrl(url)) {
+            touchSitemapUrl(sitemapNumber);
+            return true;
         }
         return false;
     }
 
+    /**
+     * Returns <code>true</code> if any sitemap registered in sitemap index contains the current URL.
+     * Sitemaps that are not loaded yet are loaded only if they may contain the URL.
+     *
+     * @param url URL to be tested
+     * @return <code>true</code> if any registered sitemap contains the URL
+     */
+    @Override
+    protected boolean containsUrl(Sitemap.Url url) {
+        return findSitemapNumber(url.getLoc()) >= 0;
+    }
+
     /**
      * Performs to flush the current state of the sitemap index and all registered sitemaps in it.
+     * Only sitemaps that have been modified since they were loaded or flushed are written,
+     * so unchanged sitemap files and their <tt>lastmod</tt> in the sitemap index stay as they are;
+     * the URLs of unchanged sitemaps are released from memory. Sitemaps that are not loaded are left untouched;
+     * unloaded sitemaps were flushed when they were unloaded.
+     * The sitemap index file is written after all sitemaps, so it is not written if any of them fail,
+     * and only if its entries have changed or the file does not exist yet.
+     * If the sidecar file is enabled, it is written last.
      * This method is part of the life cycle of working with a sitemap.
+     *
+     * @throws SitemapNotFlushedException if errors occurred while flushing the sitemap index or any sitemaps in it;
+     *                                    if sitemaps are flushed concurrently, the failures of all sitemaps
+     *                                    are attached as suppressed exceptions
      */
     @Override
     public void flush() {
-        new SitemapIndexFlusher().flush(urls.values(), file);
+        int[] urlCounts = sidecarEnabled ? collectUrlCounts() : null;
+        List<Sitemap> flushingSitemaps = new ArrayList<>(loadedSitemaps.size());
+        for (Sitemap sitemap: loadedSitemaps.values()) {
+            if (sitemap.isDirty() || !sitemap.file.exists()) {
+                flushingSitemaps.add(sitemap);
+            }
+            else {
+                sitemap.unload();
+            }
+        }
+        if (nonNull(executor) && flushingSitemaps.size() > 1) {
+            flushConcurrently(flushingSitemaps);
+        }
+        else {
+            flushingSitemaps.forEach(Sitemap::flush);
+        }
 
-        sitemaps.values().forEach(Sitemap::flush);
+        if (entriesModified || !file.exists()) {
+            new SitemapIndexFlusher().flush(urls, file);
+            entriesModified = false;
+        }
+        if (sidecarEnabled) {
+            List<File> sitemapFiles = new ArrayList<>(sitemapLocs.size());
+            for (int sitemapNumber = 0; sitemapNumber < sitemapLocs.size(); sitemapNumber++) {
+                sitemapFiles.add(getSitemap(sitemapNumber).file);
+            }
+            SitemapIndexSidecar.write(file, sitemapLocs, sitemapFiles, urlCounts, locRegistry);
+        }
         urls.clear();
+        locRegistry.clear();
+        availableSitemaps.clear();
+    }
+
+    private void flushConcurrently(List<Sitemap> flushingSitemaps) {
+        List<CompletableFuture<Void>> flushings = new ArrayList<>(flushingSitemaps.size());
+        for (Sitemap sitemap: flushingSitemaps) {
+            flushings.add(CompletableFuture.runAsync(sitemap::flush, executor));
+        }
+
+        List<RuntimeException> failures = new ArrayList<>();
+        for (int i = 0; i < flushings.size(); i++) {
+            try {
+                flushings.get(i).join();
+            }
+            catch (CompletionException | CancellationException e) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                String filename = flushingSitemaps.get(i).file.getName();
+                failures.add(new SitemapNotFlushedException(filename, cause));
+            }
+        }
+        if (!failures.isEmpty()) {
+            SitemapNotFlushedException exception = new SitemapNotFlushedException(
+                    failures.size() + " of " + flushingSitemaps.size() + " sitemaps failed to flush");
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private int[] collectUrlCounts() {
+        int[] urlCounts = new int[sitemapLocs.size()];
+        for (int sitemapNumber = 0; sitemapNumber < urlCounts.length; sitemapNumber++) {
+            urlCounts[sitemapNumber] = unindexedSitemaps.get(sitemapNumber) ? -1 : getSitemap(sitemapNumber).getUrlCount();
+        }
+        return urlCounts;
     }
 
     private String getBaseDir() {
@@ -222,7 +729,7 @@ public class SitemapIndex extends Sitemap {
      *
      * @see <a href="https://www.sitemaps.org/protocol.html#sitemapIndex_sitemapindex">Sitemap index tag definitions</a>
      */
-    static class Url {
+    public static class Url {
         /**
          * <p> For Sitemap: <br>
          * URL of the page. This URL must begin with the protocol (such as http) and end with a trailing slash,
@@ -249,7 +756,7 @@ public class SitemapIndex extends Sitemap {
          */
         protected Temporal lastmod;
 
-        Url(String loc) {
+        public Url(String loc) {
             if (isNull(loc) || loc.isEmpty()) {
                 throw new IllegalArgumentException("Parameter 'loc' must not be null or empty");
             }
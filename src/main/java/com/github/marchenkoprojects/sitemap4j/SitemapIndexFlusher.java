@@ -1,10 +1,29 @@
 package com.github.marchenkoprojects.sitemap4j;
 
+import com.github.marchenkoprojects.sitemap4j.SitemapIndex.Url;
+
+import java.io.IOException;
+
+import static java.util.Objects.nonNull;
+
 /**
  * @author Oleg Marchenko
  */
 class SitemapIndexFlusher extends SitemapFlusher {
 
+    @Override
+    protected void writeUrl(Utf8XmlWriter writer, Url url) throws IOException {
+        writer.writeMarkup("\t<sitemap>\n\t\t<loc>");
+        writer.writeText(url.getLoc());
+        writer.writeMarkup("</loc>\n");
+        if (nonNull(url.getLastmod())) {
+            writer.writeMarkup("\t\t<lastmod>");
+            writer.writeLastmod(url.getLastmod());
+            writer.writeMarkup("</lastmod>\n");
+        }
+        writer.writeMarkup("\t</sitemap>\n");
+    }
+
     @Override
     protected String getStartRootTag() {
         return "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n";
@@ -3,13 +3,8 @@ package com.github.marchenkoprojects.sitemap4j;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
-import java.io.File;
-import java.time.LocalDate;
-import java.time.OffsetDateTime;
 import java.time.temporal.Temporal;
-import java.util.Map;
 import java.util.function.BiConsumer;
-import java.util.regex.Pattern;
 
 import static java.util.Objects.nonNull;
 
@@ -19,72 +14,60 @@ import static java.util.Objects.nonNull;
 class SitemapIndexLoader extends SitemapLoader {
 
     @Override
-    void load(File file, Map<String, SitemapIndex.Url> urls) {
-        XMLStreamReader xmlStreamReader = null;
-        try {
-            UrlBuilder urlBuilder = null;
-            BiConsumer<String, UrlBuilder> tagValueConsumer = null;
-
-            xmlStreamReader = createXMLStreamReader(file);
-            while (xmlStreamReader.hasNext()) {
-                int event = xmlStreamReader.next();
-                if (event == XMLEvent.START_ELEMENT) {
-                    String tagName = xmlStreamReader.getLocalName();
-                    switch (tagName) {
-                        case "sitemap":
-                            urlBuilder = new UrlBuilder();
-                            break;
-                        case "loc":
-                            tagValueConsumer = (value, builder) -> builder.setLoc(value);
-                            break;
-                        case "lastmod":
-                            tagValueConsumer = (value, builder) -> builder.setLastmod(value);
-                            break;
-                    }
-                }
-                else if (event == XMLEvent.CHARACTERS) {
-                    String text = xmlStreamReader.getText().trim();
-                    if (nonNull(tagValueConsumer) && !text.isEmpty()) {
-                        tagValueConsumer.accept(text, urlBuilder);
-                    }
-                }
-                else if (event == XMLEvent.END_ELEMENT) {
-                    String tagName = xmlStreamReader.getLocalName();
-                    switch (tagName) {
-                        case "sitemap":
-                            if (nonNull(urlBuilder)) {
-                                SitemapIndex.Url url = urlBuilder.build();
-                                urls.put(url.getLoc(), url);
-
-                                urlBuilder = null;
-                            }
-                            break;
-                        case "loc":
-                        case "lastmod":
-                            tagValueConsumer = null;
-                            break;
-                    }
+    SitemapIndex.Url nextUrl(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        UrlBuilder urlBuilder = null;
+        BiConsumer<String, UrlBuilder> tagValueConsumer = null;
+        while (xmlStreamReader.hasNext()) {
+            int event = xmlStreamReader.next();
+            if (event == XMLEvent.START_ELEMENT) {
+                String tagName = xmlStreamReader.getLocalName();
+                switch (tagName) {
+                    case "sitemap":
+                        urlBuilder = new UrlBuilder();
+                        break;
+                    case "loc":
+                        tagValueConsumer = (value, builder) -> builder.setLoc(value);
+                        break;
+                    case "lastmod":
+                        tagValueConsumer = (value, builder) -> builder.setLastmod(lastmodParser.parse(value));
+                        break;
                 }
             }
-        }
-        catch (XMLStreamException e) {
-            throw new SitemapNotLoadedException(e);
-        }
-        finally {
-            if (nonNull(xmlStreamReader)) {
-                try {
-                    xmlStreamReader.close();
+            else if (event == XMLEvent.CHARACTERS) {
+                String text = xmlStreamReader.getText().trim();
+                if (nonNull(tagValueConsumer) && !text.isEmpty()) {
+                    tagValueConsumer.accept(text, urlBuilder);
                 }
-                catch (XMLStreamException e) {
-                    throw new RuntimeException(e);
+            }
+            else if (event == XMLEvent.END_ELEMENT) {
+                String tagName = xmlStreamReader.getLocalName();
+                switch (tagName) {
+                    case "sitemap":
+                        if (nonNull(urlBuilder)) {
+                            return urlBuilder.build();
+                        }
+                        break;
+                    case "loc":
+                    case "lastmod":
+                        tagValueConsumer = null;
+                        break;
                 }
             }
         }
+        return null;
     }
 
-    protected static class UrlBuilder {
-        private static final Pattern TZD_PATTERN = Pattern.compile("(\\+\\d{2}:\\d{2}|-\\d{2}:\\d{2}|Z)");
+    @Override
+    protected String getUrlTagName() {
+        return "sitemap";
+    }
+
+    @Override
+    protected void visitUrl(SitemapVisitor visitor, String loc, CharSequence lastmod, ChangeFreq changefreq, float priority) {
+        visitor.onSitemap(loc, lastmod);
+    }
 
+    protected static class UrlBuilder {
         protected String loc;
         protected Temporal lastmod;
 
@@ -92,13 +75,8 @@ class SitemapIndexLoader extends SitemapLoader {
             this.loc = loc;
         }
 
-        public void setLastmod(String value) {
-            if (TZD_PATTERN.matcher(value).find()) {
-                this.lastmod = OffsetDateTime.parse(value);
-            }
-            else {
-                this.lastmod = LocalDate.parse(value);
-            }
+        public void setLastmod(Temporal lastmod) {
+            this.lastmod = lastmod;
         }
 
         public SitemapIndex.Url build() {
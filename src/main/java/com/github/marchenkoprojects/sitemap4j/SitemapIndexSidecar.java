@@ -0,0 +1,224 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Binary sidecar of a sitemap index file with the location hashes of all registered sitemaps.
+ *
+ * <p> The sidecar is written next to the sitemap index file as <tt>&lt;index file&gt;.idx</tt>
+ * and lets the sitemap index route URLs to its sitemaps without parsing the sitemap files.
+ * It consists of:
+ * <ul>
+ *     <li>a header with the length and modification time of the sitemap index file;</li>
+ *     <li>a table of the registered sitemaps with their locations, the length and modification time of their files
+ *     and the number of their URLs;</li>
+ *     <li>the sorted location hashes of every sitemap, in the order of the table;</li>
+ *     <li>a CRC32 checksum of all the above.</li>
+ * </ul>
+ * A sidecar with a wrong checksum or one written for another state of the sitemap index file is ignored.
+ * A sitemap whose file has changed since the sidecar was written has to be loaded from its file.
+ *
+ * @author Oleg Marchenko
+ */
+final class SitemapIndexSidecar {
+    private static final String SIDECAR_FILE_EXT = ".idx";
+    private static final String TEMP_FILE_EXT = ".tmp";
+
+    private static final int MAGIC = 0x53344A58;
+    private static final int VERSION = 1;
+
+    private final String[] sitemapLocs;
+    private final long[] fileLengths;
+    private final long[] fileModifications;
+    private final int[] urlCounts;
+    private final int[] hashOffsets;
+    private final long[] hashes;
+
+    private SitemapIndexSidecar(String[] sitemapLocs, long[] fileLengths, long[] fileModifications,
+                                int[] urlCounts, int[] hashOffsets, long[] hashes) {
+        this.sitemapLocs = sitemapLocs;
+        this.fileLengths = fileLengths;
+        this.fileModifications = fileModifications;
+        this.urlCounts = urlCounts;
+        this.hashOffsets = hashOffsets;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Returns <code>true</code> if the sitemap with the given number is described by this sidecar
+     * and its file has not changed since the sidecar was written.
+     *
+     * @param sitemapNumber number of the sitemap in the sitemap index
+     * @param sitemapLoc location of the sitemap
+     * @param sitemapFile file of the sitemap
+     * @return <code>true</code> if the location hashes of the sitemap are up to date
+     */
+    boolean isCurrent(int sitemapNumber, String sitemapLoc, File sitemapFile) {
+        return sitemapNumber < sitemapLocs.length
+                && urlCounts[sitemapNumber] >= 0
+                && sitemapLocs[sitemapNumber].equals(sitemapLoc)
+                && fileLengths[sitemapNumber] == sitemapFile.length()
+                && fileModifications[sitemapNumber] == sitemapFile.lastModified();
+    }
+
+    int getUrlCount(int sitemapNumber) {
+        return urlCounts[sitemapNumber];
+    }
+
+    /**
+     * Registers the location hashes of the sitemap with the given number.
+     *
+     * @param sitemapNumber number of the sitemap in the sitemap index
+     * @param locRegistry registry to fill
+     */
+    void registerLocs(int sitemapNumber, LocRegistry locRegistry) {
+        for (int i = hashOffsets[sitemapNumber]; i < hashOffsets[sitemapNumber + 1]; i++) {
+            locRegistry.registerHash(hashes[i], sitemapNumber);
+        }
+    }
+
+    /**
+     * Reads the sidecar of the sitemap index file.
+     *
+     * @param indexFile sitemap index file
+     * @return the sidecar or <code>null</code> if it does not exist, is damaged
+     *         or was written for another state of the sitemap index file
+     */
+    static SitemapIndexSidecar read(File indexFile) {
+        File sidecarFile = getSidecarFile(indexFile);
+        if (!sidecarFile.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecarFile.toPath(), READ)) {
+            ByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+            if (!hasValidChecksum(buffer)) {
+                return null;
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != indexFile.length() || buffer.getLong() != indexFile.lastModified()) {
+                return null;
+            }
+
+            int sitemapCount = buffer.getInt();
+            String[] sitemapLocs = new String[sitemapCount];
+            long[] fileLengths = new long[sitemapCount];
+            long[] fileModifications = new long[sitemapCount];
+            int[] urlCounts = new int[sitemapCount];
+            int[] hashOffsets = new int[sitemapCount + 1];
+            for (int sitemapNumber = 0; sitemapNumber < sitemapCount; sitemapNumber++) {
+                byte[] loc = new byte[buffer.getInt()];
+                buffer.get(loc);
+                sitemapLocs[sitemapNumber] = new String(loc, UTF_8);
+                fileLengths[sitemapNumber] = buffer.getLong();
+                fileModifications[sitemapNumber] = buffer.getLong();
+                urlCounts[sitemapNumber] = buffer.getInt();
+                hashOffsets[sitemapNumber + 1] = hashOffsets[sitemapNumber] + buffer.getInt();
+            }
+
+            long[] hashes = new long[hashOffsets[sitemapCount]];
+            buffer.asLongBuffer().get(hashes);
+            return new SitemapIndexSidecar(sitemapLocs, fileLengths, fileModifications, urlCounts, hashOffsets, hashes);
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasValidChecksum(ByteBuffer buffer) {
+        int checksumPosition = buffer.limit() - Long.BYTES;
+        if (checksumPosition < 0) {
+            return false;
+        }
+        long checksum = buffer.getLong(checksumPosition);
+
+        ByteBuffer content = buffer.duplicate();
+        content.limit(checksumPosition);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue() == checksum;
+    }
+
+    /**
+     * Writes the sidecar of the sitemap index file.
+     * The sitemap index file and all sitemap files must already be flushed.
+     *
+     * @param indexFile sitemap index file
+     * @param sitemapLocs locations of the registered sitemaps in order of their numbers
+     * @param sitemapFiles files of the registered sitemaps in order of their numbers
+     * @param urlCounts numbers of URLs of the registered sitemaps,
+     *                  or <code>-1</code> for a sitemap whose locations are not registered
+     * @param locRegistry registry with the location hashes of the registered sitemaps
+     * @throws SitemapNotFlushedException if errors occurred while writing the sidecar
+     */
+    static void write(File indexFile, List<String> sitemapLocs, List<File> sitemapFiles,
+                      int[] urlCounts, LocRegistry locRegistry) {
+        int sitemapCount = sitemapLocs.size();
+        int[] hashOffsets = new int[sitemapCount + 1];
+        locRegistry.forEach((hash, owner) -> hashOffsets[owner + 1]++);
+        for (int sitemapNumber = 0; sitemapNumber < sitemapCount; sitemapNumber++) {
+            hashOffsets[sitemapNumber + 1] += hashOffsets[sitemapNumber];
+        }
+
+        long[] hashes = new long[hashOffsets[sitemapCount]];
+        int[] positions = Arrays.copyOf(hashOffsets, sitemapCount);
+        locRegistry.forEach((hash, owner) -> hashes[positions[owner]++] = hash);
+        for (int sitemapNumber = 0; sitemapNumber < sitemapCount; sitemapNumber++) {
+            Arrays.sort(hashes, hashOffsets[sitemapNumber], hashOffsets[sitemapNumber + 1]);
+        }
+
+        File sidecarFile = getSidecarFile(indexFile);
+        File tempFile = new File(sidecarFile.getPath() + TEMP_FILE_EXT);
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(tempFile), crc), 64 * 1024))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(indexFile.length());
+                output.writeLong(indexFile.lastModified());
+                output.writeInt(sitemapCount);
+                for (int sitemapNumber = 0; sitemapNumber < sitemapCount; sitemapNumber++) {
+                    byte[] loc = sitemapLocs.get(sitemapNumber).getBytes(UTF_8);
+                    File sitemapFile = sitemapFiles.get(sitemapNumber);
+                    output.writeInt(loc.length);
+                    output.write(loc);
+                    output.writeLong(sitemapFile.length());
+                    output.writeLong(sitemapFile.lastModified());
+                    output.writeInt(urlCounts[sitemapNumber]);
+                    output.writeInt(hashOffsets[sitemapNumber + 1] - hashOffsets[sitemapNumber]);
+                }
+                for (long hash: hashes) {
+                    output.writeLong(hash);
+                }
+                output.flush();
+                output.writeLong(crc.getValue());
+            }
+            Files.move(tempFile.toPath(), sidecarFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            tempFile.delete();
+            throw new SitemapNotFlushedException(e);
+        }
+    }
+
+    private static File getSidecarFile(File indexFile) {
+        return new File(indexFile.getPath() + SIDECAR_FILE_EXT);
+    }
+}
@@ -2,83 +2,54 @@ package com.github.marchenkoprojects.sitemap4j;
 
 import com.github.marchenkoprojects.sitemap4j.Sitemap.Url;
 
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
-import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.zip.GZIPInputStream;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 /**
  * @author Oleg Marchenko
  */
 class SitemapLoader {
+    private static final int NO_FIELD = 0;
+    private static final int LOC_FIELD = 1;
+    private static final int LASTMOD_FIELD = 2;
+    private static final int CHANGEFREQ_FIELD = 3;
+    private static final int PRIORITY_FIELD = 4;
 
-    void load(File file, Map<String, SitemapIndex.Url> urls) {
+    /**
+     * Exact float powers of ten used to parse plain decimal numbers.
+     */
+    static final float[] POWERS_OF_TEN = {1, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    /**
+     * Parser of the <tt>lastmod</tt> values with a cache of the values parsed by this loader.
+     */
+    protected final LastmodParser lastmodParser = new LastmodParser();
+
+    /**
+     * Reusable buffer of the <tt>lastmod</tt> text passed to a visitor.
+     */
+    private final StringBuilder lastmod = new StringBuilder(32);
+
+    void load(File file, UrlStore urls) {
         XMLStreamReader xmlStreamReader = null;
-        try {
-            UrlBuilder urlBuilder = null;
-            BiConsumer<String, UrlBuilder> tagValueConsumer = null;
-
-            xmlStreamReader = createXMLStreamReader(file);
-            while (xmlStreamReader.hasNext()) {
-                int event = xmlStreamReader.next();
-                if (event == XMLEvent.START_ELEMENT) {
-                    String tagName = xmlStreamReader.getLocalName();
-                    switch (tagName) {
-                        case "url":
-                            urlBuilder = new UrlBuilder();
-                            break;
-                        case "loc":
-                            tagValueConsumer = (value, builder) -> builder.setLoc(value);
-                            break;
-                        case "lastmod":
-                            tagValueConsumer = (value, builder) -> builder.setLastmod(value);
-                            break;
-                        case "changefreq":
-                            tagValueConsumer = (value, builder) -> builder.setChangefreq(value);
-                            break;
-                        case "priority":
-                            tagValueConsumer = (value, builder) -> builder.setPriority(value);
-                            break;
-                    }
-                }
-                else if (event == XMLEvent.CHARACTERS) {
-                    String text = xmlStreamReader.getText().trim();
-                    if (nonNull(tagValueConsumer) && !text.isEmpty()) {
-                        tagValueConsumer.accept(text, urlBuilder);
-                    }
-                }
-                else if (event == XMLEvent.END_ELEMENT) {
-                    String tagName = xmlStreamReader.getLocalName();
-                    switch (tagName) {
-                        case "url":
-                            if (nonNull(urlBuilder)) {
-                                Url url = urlBuilder.build();
-                                urls.put(url.getLoc(), url);
-
-                                urlBuilder = null;
-                            }
-                            break;
-                        case "loc":
-                        case "lastmod":
-                        case "changefreq":
-                        case "priority":
-                            tagValueConsumer = null;
-                            break;
-                    }
-                }
+        try (InputStream is = openInputStream(file)) {
+            xmlStreamReader = createXMLStreamReader(is);
+            for (SitemapIndex.Url url = nextUrl(xmlStreamReader); nonNull(url); url = nextUrl(xmlStreamReader)) {
+                urls.put(url);
             }
         }
-        catch (XMLStreamException e) {
+        catch (IOException | XMLStreamException e) {
             throw new SitemapNotLoadedException(e);
         }
         finally {
@@ -93,20 +64,235 @@ class SitemapLoader {
         }
     }
 
-    protected XMLStreamReader createXMLStreamReader(File file) {
-        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    /**
+     * Reads the events of the stream up to the end of the next URL.
+     *
+     * @param xmlStreamReader stream positioned anywhere before the next URL
+     * @return the next URL or <code>null</code> if the stream has no more URLs
+     * @throws XMLStreamException if the stream is not well-formed
+     */
+    SitemapIndex.Url nextUrl(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        UrlBuilder urlBuilder = null;
+        BiConsumer<String, UrlBuilder> tagValueConsumer = null;
+        while (xmlStreamReader.hasNext()) {
+            int event = xmlStreamReader.next();
+            if (event == XMLEvent.START_ELEMENT) {
+                String tagName = xmlStreamReader.getLocalName();
+                switch (tagName) {
+                    case "url":
+                        urlBuilder = new UrlBuilder();
+                        break;
+                    case "loc":
+                        tagValueConsumer = (value, builder) -> builder.setLoc(value);
+                        break;
+                    case "lastmod":
+                        tagValueConsumer = (value, builder) -> builder.setLastmod(lastmodParser.parse(value));
+                        break;
+                    case "changefreq":
+                        tagValueConsumer = (value, builder) -> builder.setChangefreq(value);
+                        break;
+                    case "priority":
+                        tagValueConsumer = (value, builder) -> builder.setPriority(value);
+                        break;
+                }
+            }
+            else if (event == XMLEvent.CHARACTERS) {
+                String text = xmlStreamReader.getText().trim();
+                if (nonNull(tagValueConsumer) && !text.isEmpty()) {
+                    tagValueConsumer.accept(text, urlBuilder);
+                }
+            }
+            else if (event == XMLEvent.END_ELEMENT) {
+                String tagName = xmlStreamReader.getLocalName();
+                switch (tagName) {
+                    case "url":
+                        if (nonNull(urlBuilder)) {
+                            return urlBuilder.build();
+                        }
+                        break;
+                    case "loc":
+                    case "lastmod":
+                    case "changefreq":
+                    case "priority":
+                        tagValueConsumer = null;
+                        break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the events of the stream up to the end of the next URL and passes its raw values to the visitor.
+     * No URL object is built and the text values are read straight from the character buffer of the stream.
+     *
+     * @param xmlStreamReader stream positioned anywhere before the next URL
+     * @param visitor visitor of the URL
+     * @return <code>true</code> if a URL was visited, <code>false</code> if the stream has no more URLs
+     * @throws XMLStreamException if the stream is not well-formed
+     * @throws IllegalArgumentException if the URL has no location or a malformed value
+     */
+    boolean visitNextUrl(XMLStreamReader xmlStreamReader, SitemapVisitor visitor) throws XMLStreamException {
+        boolean inUrl = false;
+        int field = NO_FIELD;
+        String loc = null;
+        boolean hasLastmod = false;
+        ChangeFreq changefreq = null;
+        float priority = Float.NaN;
+        while (xmlStreamReader.hasNext()) {
+            int event = xmlStreamReader.next();
+            if (event == XMLEvent.START_ELEMENT) {
+                String tagName = xmlStreamReader.getLocalName();
+                if (tagName.equals(getUrlTagName())) {
+                    inUrl = true;
+                    loc = null;
+                    hasLastmod = false;
+                    changefreq = null;
+                    priority = Float.NaN;
+                }
+                else {
+                    field = fieldOf(tagName);
+                }
+            }
+            else if (event == XMLEvent.CHARACTERS && inUrl && field != NO_FIELD) {
+                char[] chars = xmlStreamReader.getTextCharacters();
+                int start = xmlStreamReader.getTextStart();
+                int end = start + xmlStreamReader.getTextLength();
+                while (start < end && Character.isWhitespace(chars[start])) {
+                    start++;
+                }
+                while (end > start && Character.isWhitespace(chars[end - 1])) {
+                    end--;
+                }
+                if (start == end) {
+                    continue;
+                }
+                switch (field) {
+                    case LOC_FIELD:
+                        loc = new String(chars, start, end - start);
+                        break;
+                    case LASTMOD_FIELD:
+                        lastmod.setLength(0);
+                        lastmod.append(chars, start, end - start);
+                        hasLastmod = true;
+                        break;
+                    case CHANGEFREQ_FIELD:
+                        changefreq = parseChangefreq(chars, start, end);
+                        break;
+                    case PRIORITY_FIELD:
+                        priority = parsePriority(chars, start, end);
+                        if (priority < 0 || priority > 1) {
+                            throw new IllegalArgumentException("Parameter 'priority' must be between 0 and 1");
+                        }
+                        break;
+                }
+            }
+            else if (event == XMLEvent.END_ELEMENT) {
+                if (inUrl && xmlStreamReader.getLocalName().equals(getUrlTagName())) {
+                    if (isNull(loc)) {
+                        throw new IllegalArgumentException("Parameter 'loc' must not be null or empty");
+                    }
+                    visitUrl(visitor, loc, hasLastmod ? lastmod : null, changefreq, priority);
+                    return true;
+                }
+                field = NO_FIELD;
+            }
+        }
+        return false;
+    }
+
+    protected String getUrlTagName() {
+        return "url";
+    }
+
+    protected void visitUrl(SitemapVisitor visitor, String loc, CharSequence lastmod, ChangeFreq changefreq, float priority) {
+        visitor.onUrl(loc, lastmod, changefreq, priority);
+    }
+
+    private static int fieldOf(String tagName) {
+        switch (tagName) {
+            case "loc":
+                return LOC_FIELD;
+            case "lastmod":
+                return LASTMOD_FIELD;
+            case "changefreq":
+                return CHANGEFREQ_FIELD;
+            case "priority":
+                return PRIORITY_FIELD;
+            default:
+                return NO_FIELD;
+        }
+    }
+
+    private static ChangeFreq parseChangefreq(char[] chars, int start, int end) {
+        for (ChangeFreq changefreq: ChangeFreq.values()) {
+            String name = changefreq.name();
+            int i = 0;
+            while (start + i < end && i < name.length() && Character.toUpperCase(chars[start + i]) == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length() && start + i == end) {
+                return changefreq;
+            }
+        }
+        return ChangeFreq.valueOf(new String(chars, start, end - start).toUpperCase());
+    }
+
+    /**
+     * Parses a plain decimal number without building a string.
+     * Other number formats are parsed by {@link Float#parseFloat(String)}.
+     */
+    private static float parsePriority(char[] chars, int start, int end) {
+        int mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            }
+            else if (c >= '0' && c <= '9' && mantissa < (1 << 24) / 10) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            }
+            else {
+                return Float.parseFloat(new String(chars, start, end - start));
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Float.parseFloat(new String(chars, start, end - start));
+        }
+        return fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+    }
+
+    protected InputStream openInputStream(File file) throws IOException {
+        int bufferSize = XMLInputFactories.getReadBufferSize();
+        boolean compressed = file.getName().endsWith(".gz");
+        long length = file.length();
+        if (!compressed && length >= XMLInputFactories.getMappedReadThreshold() && length <= Integer.MAX_VALUE) {
+            return new MappedInputStream(file);
+        }
+
+        InputStream is = new FileInputStream(file);
         try {
-            InputStream is = new FileInputStream(file);
-            if (file.getName().endsWith(".gz")) {
-                is = new GZIPInputStream(is);
+            if (compressed) {
+                return new GZIPInputStream(is, bufferSize);
             }
-            return xmlInputFactory.createXMLStreamReader(new StreamSource(is));
+            return new BufferedInputStream(is, bufferSize);
         }
-        catch (IOException | XMLStreamException e) {
-            throw new SitemapNotLoadedException(e);
+        catch (IOException e) {
+            is.close();
+            throw e;
         }
     }
 
+    protected XMLStreamReader createXMLStreamReader(InputStream is) throws XMLStreamException {
+        return XMLInputFactories.get().createXMLStreamReader(is);
+    }
+
     private static class UrlBuilder extends SitemapIndexLoader.UrlBuilder {
         private ChangeFreq changefreq;
         private Float priority;
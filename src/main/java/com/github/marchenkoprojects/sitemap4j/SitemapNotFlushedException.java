@@ -7,4 +7,12 @@ public class SitemapNotFlushedException extends RuntimeException {
     public SitemapNotFlushedException(Throwable cause) {
         super(cause);
     }
+
+    public SitemapNotFlushedException(String message) {
+        super(message);
+    }
+
+    public SitemapNotFlushedException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
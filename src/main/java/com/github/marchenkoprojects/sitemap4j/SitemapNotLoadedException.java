@@ -7,4 +7,12 @@ public class SitemapNotLoadedException extends RuntimeException {
     public SitemapNotLoadedException(Throwable cause) {
         super(cause);
     }
+
+    public SitemapNotLoadedException(String message) {
+        super(message);
+    }
+
+    public SitemapNotLoadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -7,4 +7,8 @@ public class SitemapNotValidException extends RuntimeException {
     public SitemapNotValidException(Throwable cause) {
         super(cause);
     }
+
+    public SitemapNotValidException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,259 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Streaming reader of the URLs of a sitemap or all sitemaps of a sitemap index.
+ * Unlike {@link Sitemap#load()}, the reader does not keep the URLs in memory:
+ * every URL is parsed only when it is requested, so reading takes constant memory regardless of the file size.
+ *
+ * <p> If the file is a sitemap index, the sitemaps registered in it are read one after another
+ * in the order of the sitemap index. A sitemap file is looked up by its filename in the directory
+ * of the sitemap index file, the same way as {@link SitemapIndex#load()} does.
+ * Files may also have a <tt>.gz</tt> extension. The files are not validated.
+ *
+ * <p> URLs can be pulled one at a time through the iterator or the stream, or pushed to a {@link SitemapVisitor}
+ * as raw values without building URL objects. If reading fails, the reader is closed
+ * and the remaining files are skipped.
+ *
+ * <p> Example:
+ * <code>
+ *     try (SitemapReader reader = new SitemapReader(new File("sitemap-index.xml"))) {
+ *         long count = reader.stream().filter(url -&gt; url.getPriority() != null).count();
+ *     }
+ * </code>
+ *
+ * @author Oleg Marchenko
+ */
+public class SitemapReader implements Iterator<Sitemap.Url>, AutoCloseable {
+    /**
+     * Sitemap files that are still to be read.
+     */
+    private final Deque<File> pendingFiles;
+
+    private final SitemapLoader loader;
+
+    private InputStream inputStream;
+    private XMLStreamReader xmlStreamReader;
+    private Sitemap.Url nextUrl;
+
+    /**
+     * Creates a new reader of a sitemap or sitemap index file.
+     *
+     * @param file real sitemap or sitemap index file in filesystem;
+     *             this file may also have a <tt>.gz</tt> extension
+     * @throws NullPointerException if the file is <code>null</code>
+     */
+    public SitemapReader(File file) {
+        if (isNull(file)) {
+            throw new NullPointerException("Parameter 'file' must not be null");
+        }
+        this.pendingFiles = new ArrayDeque<>();
+        this.pendingFiles.add(file);
+        this.loader = new SitemapLoader();
+    }
+
+    /**
+     * Returns <code>true</code> if there are more URLs to read.
+     *
+     * @return <code>true</code> if there are more URLs
+     * @throws SitemapNotLoadedException if errors occurred while reading the files
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            while (isNull(nextUrl)) {
+                if (nonNull(xmlStreamReader)) {
+                    nextUrl = (Sitemap.Url) loader.nextUrl(xmlStreamReader);
+                    if (isNull(nextUrl)) {
+                        closeCurrentFile();
+                    }
+                }
+                else if (!pendingFiles.isEmpty()) {
+                    openFile(pendingFiles.poll(), null);
+                }
+                else {
+                    return false;
+                }
+            }
+            return true;
+        }
+        catch (IOException | XMLStreamException e) {
+            SitemapNotLoadedException exception = new SitemapNotLoadedException(e);
+            closeAfterFailure(exception);
+            throw exception;
+        }
+        catch (RuntimeException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the next URL.
+     *
+     * @return the next URL
+     * @throws NoSuchElementException if there are no more URLs
+     * @throws SitemapNotLoadedException if errors occurred while reading the files
+     */
+    @Override
+    public Sitemap.Url next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Sitemap.Url url = nextUrl;
+        nextUrl = null;
+        return url;
+    }
+
+    /**
+     * Passes the remaining URLs to the visitor without building URL objects.
+     * If a file is a sitemap index, the visitor is notified about its sitemaps before their URLs are visited.
+     *
+     * @param visitor visitor of the URLs
+     * @throws NullPointerException if the visitor is <code>null</code>
+     * @throws SitemapNotLoadedException if errors occurred while reading the files
+     */
+    public void accept(SitemapVisitor visitor) {
+        if (isNull(visitor)) {
+            throw new NullPointerException("Parameter 'visitor' must not be null");
+        }
+        if (nonNull(nextUrl)) {
+            Sitemap.Url url = nextUrl;
+            nextUrl = null;
+            Float priority = url.getPriority();
+            visitor.onUrl(url.getLoc(), nonNull(url.getLastmod()) ? url.getLastmod().toString() : null,
+                    url.getChangefreq(), nonNull(priority) ? priority : Float.NaN);
+        }
+        try {
+            while (true) {
+                if (nonNull(xmlStreamReader)) {
+                    if (!loader.visitNextUrl(xmlStreamReader, visitor)) {
+                        closeCurrentFile();
+                    }
+                }
+                else if (!pendingFiles.isEmpty()) {
+                    openFile(pendingFiles.poll(), visitor);
+                }
+                else {
+                    return;
+                }
+            }
+        }
+        catch (IOException | XMLStreamException e) {
+            SitemapNotLoadedException exception = new SitemapNotLoadedException(e);
+            closeAfterFailure(exception);
+            throw exception;
+        }
+        catch (RuntimeException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a sequential stream of the remaining URLs. Closing the stream closes this reader.
+     *
+     * @return stream of the URLs
+     */
+    public Stream<Sitemap.Url> stream() {
+        Spliterator<Sitemap.Url> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Closes the file that is currently read and skips the remaining files.
+     */
+    @Override
+    public void close() {
+        pendingFiles.clear();
+        nextUrl = null;
+        try {
+            closeCurrentFile();
+        }
+        catch (IOException | XMLStreamException e) {
+            throw new SitemapNotLoadedException(e);
+        }
+    }
+
+    /**
+     * Closes this reader after reading failed, so that no file is left open.
+     * A failure to close is added to the reading failure as suppressed.
+     */
+    private void closeAfterFailure(RuntimeException failure) {
+        try {
+            close();
+        }
+        catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Opens the file and positions the stream at its root element.
+     * The sitemaps of a sitemap index are added in front of the pending files and the index itself is closed.
+     */
+    private void openFile(File file, SitemapVisitor visitor) throws IOException, XMLStreamException {
+        inputStream = loader.openInputStream(file);
+        xmlStreamReader = loader.createXMLStreamReader(inputStream);
+        if (xmlStreamReader.nextTag() == XMLStreamReader.START_ELEMENT
+                && xmlStreamReader.getLocalName().equals("sitemapindex")) {
+            File baseDir = file.getAbsoluteFile().getParentFile();
+            List<File> sitemapFiles = new ArrayList<>();
+            SitemapVisitor sitemapCollector = new SitemapVisitor() {
+                @Override
+                public void onUrl(String loc, CharSequence lastmod, ChangeFreq changefreq, float priority) {
+                }
+
+                @Override
+                public void onSitemap(String loc, CharSequence lastmod) {
+                    sitemapFiles.add(new File(baseDir, loc.substring(loc.lastIndexOf('/') + 1)));
+                    if (nonNull(visitor)) {
+                        visitor.onSitemap(loc, lastmod);
+                    }
+                }
+            };
+            SitemapIndexLoader indexLoader = new SitemapIndexLoader();
+            while (indexLoader.visitNextUrl(xmlStreamReader, sitemapCollector)) {
+                continue;
+            }
+            closeCurrentFile();
+            for (int i = sitemapFiles.size() - 1; i >= 0; i--) {
+                pendingFiles.addFirst(sitemapFiles.get(i));
+            }
+        }
+    }
+
+    private void closeCurrentFile() throws IOException, XMLStreamException {
+        try {
+            if (nonNull(xmlStreamReader)) {
+                xmlStreamReader.close();
+            }
+        }
+        finally {
+            xmlStreamReader = null;
+            if (nonNull(inputStream)) {
+                InputStream is = inputStream;
+                inputStream = null;
+                is.close();
+            }
+        }
+    }
+}
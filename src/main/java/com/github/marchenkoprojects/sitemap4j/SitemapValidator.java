@@ -2,41 +2,66 @@ package com.github.marchenkoprojects.sitemap4j;
 
 import org.xml.sax.SAXException;
 
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
+import javax.xml.validation.ValidatorHandler;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import static java.util.Objects.isNull;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 
 /**
+ * Validator of sitemap files against the sitemap schema.
+ * A file is validated while it is loaded: the loader feeds the SAX events of the file
+ * through the validator handler, see {@link ValidatingSitemapLoader}.
+ *
+ * <p> The schema is loaded from the classpath and compiled only once; the compiled schema is thread-safe
+ * and shared by all validators. Every thread keeps its own validator handler of each schema
+ * and reuses it for all files it validates.
+ *
  * @author Oleg Marchenko
  */
 class SitemapValidator {
+    private static final ConcurrentMap<String, Schema> SCHEMAS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<String, ValidatorHandler>> VALIDATOR_HANDLERS = ThreadLocal.withInitial(HashMap::new);
 
-    void validate(File file) {
-        validate(file, new File("src/main/resources/sitemap.xsd"));
+    /**
+     * Returns the handler of the current thread that validates a stream of SAX events against the schema
+     * and passes them on to its content handler.
+     *
+     * @return validator handler
+     */
+    ValidatorHandler getValidatorHandler() {
+        return VALIDATOR_HANDLERS.get().computeIfAbsent(getSchemaResource(), resource -> getSchema().newValidatorHandler());
     }
 
-    void validate(File file, File schemaFile) {
-        SchemaFactory schemaFactory = SchemaFactory.newInstance(W3C_XML_SCHEMA_NS_URI);
+    /**
+     * Returns the name of the schema resource on the classpath.
+     *
+     * @return schema resource name
+     */
+    protected String getSchemaResource() {
+        return "sitemap.xsd";
+    }
+
+    private Schema getSchema() {
+        return SCHEMAS.computeIfAbsent(getSchemaResource(), SitemapValidator::compileSchema);
+    }
+
+    private static Schema compileSchema(String resource) {
+        URL schemaUrl = SitemapValidator.class.getClassLoader().getResource(resource);
+        if (isNull(schemaUrl)) {
+            throw new IllegalStateException("Schema '" + resource + "' is not found on the classpath");
+        }
         try {
-            InputStream is = new FileInputStream(file);
-            if (file.getName().endsWith(".gz")) {
-                is = new GZIPInputStream(is);
-            }
-
-            Schema schema = schemaFactory.newSchema(schemaFile);
-            Validator validator = schema.newValidator();
-            validator.validate(new StreamSource(is));
+            return SchemaFactory.newInstance(W3C_XML_SCHEMA_NS_URI).newSchema(schemaUrl);
         }
-        catch (SAXException | IOException e) {
-            throw new SitemapNotValidException(e);
+        catch (SAXException e) {
+            throw new IllegalStateException("Schema '" + resource + "' cannot be compiled", e);
         }
     }
 }
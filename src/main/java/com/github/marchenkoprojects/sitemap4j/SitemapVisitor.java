@@ -0,0 +1,37 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+/**
+ * Callback interface for push-style processing of sitemap files.
+ * The entries are passed as raw values, so no URL object is built per entry.
+ *
+ * <p> The <tt>lastmod</tt> text is passed in a buffer that is reused for the next entry;
+ * it must be copied, e.g. with <code>toString()</code>, if it is needed after the callback returns.
+ *
+ * @author Oleg Marchenko
+ * @see SitemapReader#accept(SitemapVisitor)
+ */
+@FunctionalInterface
+public interface SitemapVisitor {
+
+    /**
+     * Called for every URL of a sitemap in the order of the file.
+     *
+     * @param loc URL location
+     * @param lastmod the trimmed text of the <tt>lastmod</tt> tag in W3C Datetime format
+     *                or <code>null</code> if the URL has no <tt>lastmod</tt>
+     * @param changefreq the change frequency or <code>null</code> if the URL has no <tt>changefreq</tt>
+     * @param priority the priority or {@link Float#NaN} if the URL has no <tt>priority</tt>
+     */
+    void onUrl(String loc, CharSequence lastmod, ChangeFreq changefreq, float priority);
+
+    /**
+     * Called for every sitemap registered in a sitemap index, before the URLs of the sitemaps are visited.
+     * Does nothing by default.
+     *
+     * @param loc location of the sitemap
+     * @param lastmod the trimmed text of the <tt>lastmod</tt> tag in W3C Datetime format
+     *                or <code>null</code> if the sitemap has no <tt>lastmod</tt>
+     */
+    default void onSitemap(String loc, CharSequence lastmod) {
+    }
+}
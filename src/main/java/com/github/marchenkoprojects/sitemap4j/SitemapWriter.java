@@ -0,0 +1,277 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Write-only streaming writer of a sitemap index and its sitemaps.
+ * Unlike {@link SitemapIndex}, the writer does not keep the URLs in memory:
+ * every URL is written straight to the current sitemap file, so writing takes constant memory
+ * regardless of the number of URLs.
+ *
+ * <p> When the current sitemap file reaches the maximum number of URLs or the maximum file size,
+ * it is closed and the next sitemap file is opened. The sitemap files are created in the directory
+ * of the sitemap index file and named with the sitemap filename prefix, the same way as {@link SitemapIndex} does;
+ * they are compressed if the sitemap index file has a <tt>.gz</tt> extension.
+ * The sitemap index file is written when the writer is closed. Existing files are overwritten.
+ * The URLs are not checked for duplicates.
+ *
+ * <p> Example:
+ * <code>
+ *     try (SitemapWriter writer = new SitemapWriter(new File("sitemap-index.xml"), "http://example.com")) {
+ *         writer.write("/page1.html");
+ *         writer.write("/page2.html");
+ *     }
+ * </code>
+ *
+ * @author Oleg Marchenko
+ */
+public class SitemapWriter implements AutoCloseable {
+    private static final String DEFAULT_FILENAME_PREFIX = "sitemap";
+    private static final String SITEMAP_FILE_EXT = ".xml";
+    private static final String GZIP_FILE_EXT = ".gz";
+
+    /**
+     * Number of bytes reserved in the buffer for a single URL, so that a URL
+     * that does not fit into the current sitemap file can be taken back.
+     */
+    private static final int MAX_URL_BYTES = 16 * 1024;
+
+    private final File file;
+    private final String baseUrl;
+
+    private final SitemapFlusher sitemapFlusher = new SitemapFlusher();
+    private final SitemapIndexFlusher sitemapIndexFlusher = new SitemapIndexFlusher();
+
+    /**
+     * Entries of the sitemap index for the sitemap files that have been closed.
+     */
+    private final List<SitemapIndex.Url> sitemapUrls = new ArrayList<>();
+
+    private String sitemapFilenamePrefix = DEFAULT_FILENAME_PREFIX;
+    private int maxUrls = StructuralValidatingLoader.MAX_ENTRIES;
+    private long maxFileSize = StructuralValidatingLoader.MAX_FILE_SIZE;
+
+    private String sitemapLoc;
+    private Utf8XmlWriter sitemapWriter;
+    private int sitemapUrlCount;
+    private long urlCount;
+    private boolean closed;
+
+    /**
+     * Creates a new writer of a sitemap index file and base site URL.
+     *
+     * @param file sitemap index file in filesystem;
+     *             this file may also have a <tt>.gz</tt> extension
+     * @param baseUrl basic site URL
+     * @throws NullPointerException if the file or base URL is <code>null</code>
+     */
+    public SitemapWriter(File file, String baseUrl) {
+        if (isNull(file)) {
+            throw new NullPointerException("Parameter 'file' must not be null");
+        }
+        if (isNull(baseUrl)) {
+            throw new NullPointerException("Parameter 'baseUrl' must not be null");
+        }
+        this.file = file;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Sets the sitemap filename prefix. Applies to the sitemap files opened afterwards.
+     *
+     * @param sitemapFilenamePrefix the sitemap filename prefix
+     */
+    public void setSitemapFilenamePrefix(String sitemapFilenamePrefix) {
+        this.sitemapFilenamePrefix = sitemapFilenamePrefix;
+    }
+
+    /**
+     * Sets the maximum number of URLs written to a sitemap file. By default, the maximum is 50,000 URLs.
+     *
+     * @param maxUrls the maximum number of URLs
+     * @throws IllegalArgumentException if the maximum number of URLs is less than 1 or exceeds 50,000 URLs
+     */
+    public void setMaxUrls(int maxUrls) {
+        if (maxUrls < 1 || maxUrls > StructuralValidatingLoader.MAX_ENTRIES) {
+            throw new IllegalArgumentException("Parameter 'maxUrls' must be between 1 and 50,000 URLs");
+        }
+        this.maxUrls = maxUrls;
+    }
+
+    /**
+     * Sets the maximum uncompressed size of a sitemap file in bytes. By default, the maximum is 50 MB.
+     *
+     * @param maxFileSize the maximum file size
+     * @throws IllegalArgumentException if the maximum file size is less than the buffer reserved for a URL
+     *                                  or exceeds 50 MB
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        if (maxFileSize < MAX_URL_BYTES || maxFileSize > StructuralValidatingLoader.MAX_FILE_SIZE) {
+            throw new IllegalArgumentException("Parameter 'maxFileSize' must be between 16 KB and 50 MB");
+        }
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Creates a new URL for writing. If the URL does not start with the base URL, the base URL is prepended.
+     *
+     * @param url URL or its part without the base URL
+     * @return created URL
+     * @throws IllegalArgumentException if URL is <code>null</code> or empty
+     */
+    public Sitemap.Url createUrl(String url) {
+        if (isNull(url) || url.isEmpty()) {
+            throw new IllegalArgumentException("Parameter 'url' must not be null or empty");
+        }
+        return new Sitemap.Url(url.startsWith(baseUrl) ? url : baseUrl + url);
+    }
+
+    /**
+     * Writes a new URL to the current sitemap file.
+     *
+     * @param url URL or its part without the base URL
+     * @throws IllegalArgumentException if URL is <code>null</code> or empty or exceeds 2,048 characters
+     * @throws IllegalStateException if the writer is closed
+     * @throws SitemapNotFlushedException if errors occurred while writing the files
+     */
+    public void write(String url) {
+        write(createUrl(url));
+    }
+
+    /**
+     * Writes the URL to the current sitemap file.
+     *
+     * @param url URL to write
+     * @throws NullPointerException if URL is <code>null</code>
+     * @throws IllegalArgumentException if the location of the URL exceeds 2,048 characters
+     * @throws IllegalStateException if the writer is closed
+     * @throws SitemapNotFlushedException if errors occurred while writing the files
+     */
+    public void write(Sitemap.Url url) {
+        if (isNull(url)) {
+            throw new NullPointerException("Parameter 'url' must not be null");
+        }
+        if (url.getLoc().length() > StructuralValidatingLoader.MAX_LOC_LENGTH) {
+            throw new IllegalArgumentException("Parameter 'url' must not exceed 2,048 characters");
+        }
+        if (closed) {
+            throw new IllegalStateException("Sitemap writer is closed");
+        }
+        try {
+            if (isNull(sitemapWriter) || sitemapUrlCount >= maxUrls || !tryWriteUrl(url)) {
+                openNextSitemap();
+                tryWriteUrl(url);
+            }
+            urlCount++;
+        }
+        catch (IOException e) {
+            throw new SitemapNotFlushedException(e);
+        }
+    }
+
+    /**
+     * Returns the number of URLs written so far.
+     *
+     * @return number of written URLs
+     */
+    public long getUrlCount() {
+        return urlCount;
+    }
+
+    /**
+     * Returns the number of sitemap files opened so far.
+     *
+     * @return number of sitemap files
+     */
+    public int getSitemapCount() {
+        return sitemapUrls.size() + (nonNull(sitemapWriter) ? 1 : 0);
+    }
+
+    /**
+     * Closes the current sitemap file and writes the sitemap index file.
+     * Closing a closed writer has no effect.
+     *
+     * @throws SitemapNotFlushedException if errors occurred while writing the files
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeSitemap();
+            try (Utf8XmlWriter indexWriter = new Utf8XmlWriter(SitemapFlusher.openOutputStream(file))) {
+                sitemapIndexFlusher.writeStart(indexWriter);
+                for (SitemapIndex.Url sitemapUrl: sitemapUrls) {
+                    sitemapIndexFlusher.writeUrl(indexWriter, sitemapUrl);
+                }
+                sitemapIndexFlusher.writeEnd(indexWriter);
+            }
+        }
+        catch (IOException e) {
+            throw new SitemapNotFlushedException(e);
+        }
+    }
+
+    /**
+     * Writes the URL to the current sitemap file unless it would exceed the maximum file size.
+     * The first URL of a sitemap file is always written.
+     *
+     * @return <code>true</code> if the URL is written
+     */
+    private boolean tryWriteUrl(Sitemap.Url url) throws IOException {
+        long mark = sitemapWriter.getByteCount();
+        sitemapWriter.reserve(MAX_URL_BYTES);
+        sitemapFlusher.writeUrl(sitemapWriter, url);
+        long size = sitemapWriter.getByteCount() + sitemapFlusher.getEndRootTag().length();
+        if (size > maxFileSize && sitemapUrlCount > 0) {
+            sitemapWriter.rewind(mark);
+            return false;
+        }
+        sitemapUrlCount++;
+        return true;
+    }
+
+    private void openNextSitemap() throws IOException {
+        closeSitemap();
+        if (sitemapUrls.size() >= StructuralValidatingLoader.MAX_ENTRIES) {
+            throw new SitemapNotFlushedException("Sitemap index cannot exceed 50,000 sitemaps");
+        }
+
+        String sitemapFilename = sitemapFilenamePrefix + (sitemapUrls.size() + 1) + SITEMAP_FILE_EXT;
+        if (file.getName().endsWith(GZIP_FILE_EXT)) {
+            sitemapFilename += GZIP_FILE_EXT;
+        }
+        File sitemapFile = new File(file.getAbsoluteFile().getParentFile(), sitemapFilename);
+        sitemapWriter = new Utf8XmlWriter(SitemapFlusher.openOutputStream(sitemapFile));
+        sitemapLoc = baseUrl + (baseUrl.endsWith("/") ? "" : "/") + sitemapFilename;
+        sitemapUrlCount = 0;
+        sitemapFlusher.writeStart(sitemapWriter);
+    }
+
+    private void closeSitemap() throws IOException {
+        if (isNull(sitemapWriter)) {
+            return;
+        }
+        Utf8XmlWriter writer = sitemapWriter;
+        sitemapWriter = null;
+        try {
+            sitemapFlusher.writeEnd(writer);
+        }
+        finally {
+            writer.close();
+        }
+
+        SitemapIndex.Url sitemapUrl = new SitemapIndex.Url(sitemapLoc);
+        sitemapUrl.setLastmod(LocalDateTime.now());
+        sitemapUrls.add(sitemapUrl);
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.DateTimeException;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Loader that checks the limits of the sitemap protocol while another loader loads a file.
+ * No schema is involved: the file size is checked before loading, and the number of entries
+ * and the length of every location are checked as the entries are put into the store.
+ * Malformed field values rejected by the loader are reported as validation errors too.
+ *
+ * <p> If the file does not pass the validation, the URLs that have been loaded before the error
+ * are removed from the store.
+ *
+ * @author Oleg Marchenko
+ * @see ValidationLevel#STRUCTURAL
+ */
+class StructuralValidatingLoader extends SitemapLoader {
+    /**
+     * Maximum size of an uncompressed sitemap file.
+     */
+    static final long MAX_FILE_SIZE = 50L * 1024 * 1024;
+    /**
+     * Maximum number of entries in a sitemap file.
+     */
+    static final int MAX_ENTRIES = 50_000;
+    /**
+     * Maximum length of an entry location.
+     */
+    static final int MAX_LOC_LENGTH = 2048;
+
+    private final SitemapLoader loader;
+
+    StructuralValidatingLoader(SitemapLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    void load(File file, UrlStore urls) {
+        long fileSize = getUncompressedSize(file);
+        if (fileSize > MAX_FILE_SIZE) {
+            throw new SitemapNotValidException("File '" + file.getName() + "' must not exceed 50 MB uncompressed");
+        }
+        try {
+            loader.load(file, new CheckingUrlStore(urls));
+        }
+        catch (IllegalArgumentException | DateTimeException e) {
+            urls.clear();
+            throw new SitemapNotValidException(e);
+        }
+        catch (SitemapNotValidException e) {
+            urls.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the uncompressed size of the file. The size of a <tt>.gz</tt> file is read from its trailer,
+     * which keeps the size modulo 2<sup>32</sup>.
+     */
+    static long getUncompressedSize(File file) {
+        if (!file.getName().endsWith(".gz")) {
+            return file.length();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 4) {
+                return 0;
+            }
+            raf.seek(raf.length() - 4);
+            return Integer.reverseBytes(raf.readInt()) & 0xFFFFFFFFL;
+        }
+        catch (IOException e) {
+            throw new SitemapNotLoadedException(e);
+        }
+    }
+
+    /**
+     * Store that checks every entry put by the loader before passing it on to the target store.
+     */
+    private static final class CheckingUrlStore implements UrlStore {
+        private final UrlStore urls;
+        private int entryCount;
+
+        CheckingUrlStore(UrlStore urls) {
+            this.urls = urls;
+        }
+
+        @Override
+        public int size() {
+            return urls.size();
+        }
+
+        @Override
+        public boolean contains(String loc) {
+            return urls.contains(loc);
+        }
+
+        @Override
+        public SitemapIndex.Url get(String loc) {
+            return urls.get(loc);
+        }
+
+        @Override
+        public void put(SitemapIndex.Url url) {
+            if (++entryCount > MAX_ENTRIES) {
+                throw new SitemapNotValidException("File must not contain more than 50,000 entries");
+            }
+            if (url.getLoc().length() > MAX_LOC_LENGTH) {
+                throw new SitemapNotValidException("Location of entry " + entryCount + " must not exceed 2,048 characters");
+            }
+            urls.put(url);
+        }
+
+        @Override
+        public SitemapIndex.Url replace(SitemapIndex.Url url) {
+            return urls.replace(url);
+        }
+
+        @Override
+        public void clear() {
+            entryCount = 0;
+            urls.clear();
+        }
+
+        @Override
+        public Iterator<SitemapIndex.Url> iterator() {
+            return urls.iterator();
+        }
+
+        @Override
+        public void forEachLoc(Consumer<? super String> action) {
+            urls.forEachLoc(action);
+        }
+    }
+}
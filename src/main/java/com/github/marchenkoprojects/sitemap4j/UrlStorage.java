@@ -0,0 +1,84 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+
+import static java.util.Objects.isNull;
+
+/**
+ * This type is used to indicate how a sitemap keeps its URLs in memory.
+ * Represents the built-in URL store factories; other stores can be plugged in
+ * by implementing {@link UrlStoreFactory}.
+ *
+ * @author Oleg Marchenko
+ * @see Sitemap#setUrlStorage(UrlStoreFactory)
+ */
+public enum UrlStorage implements UrlStoreFactory {
+    /**
+     * Keeps every URL as an object in a linked hash map.
+     * This is the default storage.
+     */
+    HEAP {
+        @Override
+        public UrlStore createStore(File file, String baseUrl) {
+            return new HeapUrlStore();
+        }
+    },
+    /**
+     * Keeps the URL fields in compact primitive columns and builds URL objects only on demand.
+     * The base site URL is stored once and common parts of the locations are front-coded.
+     * Uses several times less memory per URL at the cost of slower access.
+     * The priority is stored with a precision of four decimal places.
+     */
+    COMPACT {
+        @Override
+        public UrlStore createStore(File file, String baseUrl) {
+            return new CompactUrlStore(baseUrl);
+        }
+    },
+    /**
+     * Keeps the URLs off-heap in memory-mapped files, so the heap footprint does not depend on the number of URLs.
+     * The files are kept in the <tt>sitemap4j-urls</tt> directory under the directory of temporary files,
+     * not next to the sitemap files that are usually published; use {@link #mapped(File)} to choose another directory.
+     * The files outlive the process: while the sitemap file is unchanged, loading the sitemap
+     * reuses the stored URLs instead of parsing the file, and flushing keeps them in the store.
+     * The priority is stored with a precision of four decimal places.
+     */
+    MAPPED {
+        @Override
+        public UrlStore createStore(File file, String baseUrl) {
+            return new MappedUrlStore(file, baseUrl, DEFAULT_STORE_DIRECTORY);
+        }
+
+        @Override
+        public boolean isOffHeap() {
+            return true;
+        }
+    };
+
+    private static final File DEFAULT_STORE_DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "sitemap4j-urls");
+
+    /**
+     * Returns a storage that works like {@link #MAPPED} but keeps the memory-mapped files in the given directory.
+     * The directory is created if it does not exist. It should not be published together with the sitemap files.
+     *
+     * @param storeDirectory directory of the memory-mapped files
+     * @return off-heap URL storage
+     * @throws NullPointerException if the store directory is <code>null</code>
+     */
+    public static UrlStoreFactory mapped(File storeDirectory) {
+        if (isNull(storeDirectory)) {
+            throw new NullPointerException("Parameter 'storeDirectory' must not be null");
+        }
+        return new UrlStoreFactory() {
+            @Override
+            public UrlStore createStore(File file, String baseUrl) {
+                return new MappedUrlStore(file, baseUrl, storeDirectory);
+            }
+
+            @Override
+            public boolean isOffHeap() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Storage of the URLs of a single sitemap or sitemap index.
+ * This is the service provider interface behind every sitemap: loading, modifying and flushing
+ * a sitemap go through its URL store only, so any backend can be plugged in with a {@link UrlStoreFactory}.
+ *
+ * <p> A store identifies URLs by their locations and must iterate them in order of addition,
+ * which is the order they are flushed in. A store may keep copies of the URLs instead of the URL objects,
+ * so changing a URL after it was put does not have to change the stored one.
+ * Stores are not required to be thread-safe.
+ *
+ * @author Oleg Marchenko
+ * @see UrlStorage
+ */
+public interface UrlStore extends Iterable<SitemapIndex.Url> {
+
+    /**
+     * Returns the number of URLs in the store.
+     *
+     * @return the number of URLs
+     */
+    int size();
+
+    /**
+     * Returns <code>true</code> if the store contains a URL with the location.
+     *
+     * @param loc URL location
+     * @return <code>true</code> if the store contains the URL
+     */
+    boolean contains(String loc);
+
+    /**
+     * Returns the URL with the location.
+     *
+     * @param loc URL location
+     * @return the URL or <code>null</code> if the store does not contain it
+     */
+    SitemapIndex.Url get(String loc);
+
+    /**
+     * Adds the URL to the store or replaces the stored URL with the same location.
+     * A replaced URL keeps its position in the order of addition.
+     *
+     * @param url URL to put
+     * @throws NullPointerException if URL is <code>null</code>
+     */
+    void put(SitemapIndex.Url url);
+
+    /**
+     * Replaces the stored URL with the same location.
+     *
+     * @param url URL to put instead of the stored one
+     * @return the replaced URL or <code>null</code> if the store does not contain the URL
+     * @throws NullPointerException if URL is <code>null</code>
+     */
+    SitemapIndex.Url replace(SitemapIndex.Url url);
+
+    /**
+     * Removes all URLs from the store.
+     */
+    void clear();
+
+    /**
+     * Returns an iterator over the URLs in order of addition.
+     *
+     * @return iterator over the URLs
+     */
+    @Override
+    Iterator<SitemapIndex.Url> iterator();
+
+    /**
+     * Performs the action for the location of every URL in order of addition.
+     * Stores that do not keep URL objects should override this method to avoid building them.
+     *
+     * @param action action to be performed for each location
+     */
+    default void forEachLoc(Consumer<? super String> action) {
+        for (SitemapIndex.Url url: this) {
+            action.accept(url.getLoc());
+        }
+    }
+}
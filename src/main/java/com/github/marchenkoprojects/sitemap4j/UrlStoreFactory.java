@@ -0,0 +1,33 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+
+/**
+ * Factory of URL stores. Every sitemap creates its own store with the factory it is configured with.
+ *
+ * @author Oleg Marchenko
+ * @see Sitemap#setUrlStorage(UrlStoreFactory)
+ * @see UrlStorage
+ */
+@FunctionalInterface
+public interface UrlStoreFactory {
+
+    /**
+     * Creates an empty URL store for the sitemap file, or a persistent store with the URLs kept for the file.
+     *
+     * @param file sitemap file
+     * @param baseUrl basic site URL of the sitemap; may be <code>null</code>
+     * @return URL store
+     */
+    UrlStore createStore(File file, String baseUrl);
+
+    /**
+     * Returns <code>true</code> if the created stores keep the URLs outside the Java heap.
+     * A sitemap index then keeps its index-wide URL registry off-heap as well.
+     *
+     * @return <code>true</code> for off-heap storage
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+}
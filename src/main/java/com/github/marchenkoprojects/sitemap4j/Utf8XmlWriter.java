@@ -0,0 +1,286 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.Temporal;
+
+/**
+ * Writer of XML text that encodes characters straight into a reusable byte buffer as UTF-8
+ * and writes the buffer to the underlying stream in large blocks.
+ * Text values are escaped with the predefined XML entities; <tt>lastmod</tt> and <tt>priority</tt> values
+ * in their usual forms are formatted digit by digit, so writing a URL allocates nothing.
+ *
+ * @author Oleg Marchenko
+ */
+final class Utf8XmlWriter implements Closeable {
+    /**
+     * Size of the buffer written to the underlying stream at once.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of bytes written for a single character: the longest entity, <tt>&amp;quot;</tt>.
+     */
+    private static final int MAX_CHAR_BYTES = 6;
+
+    /**
+     * Number of bytes written for a date with a four-digit year: <tt>yyyy-MM-dd</tt>.
+     */
+    private static final int DATE_BYTES = 10;
+
+    /**
+     * Maximum number of bytes written for a timestamp with a four-digit year:
+     * <tt>yyyy-MM-ddTHH:mm:ss.nnnnnnnnn+hh:mm:ss</tt>.
+     */
+    private static final int MAX_DATE_TIME_BYTES = 38;
+
+    private final OutputStream os;
+    private final byte[] buffer;
+    private int position;
+    private long byteCount;
+
+    Utf8XmlWriter(OutputStream os) {
+        this.os = os;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Writes markup that consists of ASCII characters only, such as tags, as is.
+     *
+     * @param markup ASCII markup
+     */
+    void writeMarkup(String markup) throws IOException {
+        for (int i = 0; i < markup.length(); i++) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) markup.charAt(i);
+        }
+    }
+
+    /**
+     * Writes a text value encoded as UTF-8, escaping the characters reserved in XML.
+     * An unpaired surrogate is written as <tt>?</tt>.
+     *
+     * @param text text value
+     */
+    void writeText(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            ensureCapacity(MAX_CHAR_BYTES);
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '&':
+                        writeEntity("&amp;");
+                        break;
+                    case '<':
+                        writeEntity("&lt;");
+                        break;
+                    case '>':
+                        writeEntity("&gt;");
+                        break;
+                    case '"':
+                        writeEntity("&quot;");
+                        break;
+                    case '\'':
+                        writeEntity("&apos;");
+                        break;
+                    default:
+                        buffer[position++] = (byte) c;
+                }
+            }
+            else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            }
+            else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes a <tt>lastmod</tt> value in W3C Datetime format. A timestamp is always written with its seconds,
+     * as a full <tt>xsd:dateTime</tt> that the sitemap schemas accept, and with its fraction of a second
+     * only if it is not zero.
+     *
+     * @param lastmod lastmod value
+     */
+    void writeLastmod(Temporal lastmod) throws IOException {
+        if (lastmod instanceof LocalDate && isFourDigitYear(((LocalDate) lastmod).getYear())) {
+            ensureCapacity(DATE_BYTES);
+            writeDate((LocalDate) lastmod);
+        }
+        else if (lastmod instanceof OffsetDateTime && isFourDigitYear(((OffsetDateTime) lastmod).getYear())) {
+            ensureCapacity(MAX_DATE_TIME_BYTES);
+            writeDateTime((OffsetDateTime) lastmod);
+        }
+        else {
+            writeMarkup(lastmod.toString());
+        }
+    }
+
+    /**
+     * Writes a <tt>priority</tt> value in the same form as {@link Float#toString(float)}.
+     *
+     * @param priority priority value
+     */
+    void writePriority(float priority) throws IOException {
+        int tenths = Math.round(priority * 10);
+        if (tenths >= 0 && tenths <= 10 && tenths / 10f == priority) {
+            ensureCapacity(3);
+            buffer[position++] = (byte) ('0' + tenths / 10);
+            buffer[position++] = '.';
+            buffer[position++] = (byte) ('0' + tenths % 10);
+        }
+        else {
+            writeMarkup(Float.toString(priority));
+        }
+    }
+
+    /**
+     * Makes sure that the given number of bytes can be written without writing the buffer to the stream,
+     * so that they can still be taken back with {@link #rewind(long)}.
+     *
+     * @param byteCount number of bytes to reserve; must not exceed the buffer size
+     */
+    void reserve(int byteCount) throws IOException {
+        ensureCapacity(byteCount);
+    }
+
+    /**
+     * Takes back the bytes written since the given byte count, provided that they are still in the buffer.
+     *
+     * @param mark byte count returned by {@link #getByteCount()} before the bytes were written
+     * @throws IllegalStateException if the bytes have already been written to the stream
+     */
+    void rewind(long mark) {
+        long rewoundCount = getByteCount() - mark;
+        if (rewoundCount > position) {
+            throw new IllegalStateException("Bytes have already been written to the stream");
+        }
+        position -= (int) rewoundCount;
+    }
+
+    /**
+     * Returns the number of bytes written so far, including the bytes still in the buffer.
+     *
+     * @return number of written bytes
+     */
+    long getByteCount() {
+        return byteCount + position;
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream and flushes it.
+     */
+    void flush() throws IOException {
+        flushBuffer();
+        os.flush();
+    }
+
+    /**
+     * Writes the buffered bytes and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        }
+        finally {
+            os.close();
+        }
+    }
+
+    private void writeEntity(String entity) {
+        for (int i = 0; i < entity.length(); i++) {
+            buffer[position++] = (byte) entity.charAt(i);
+        }
+    }
+
+    private void writeDate(LocalDate date) {
+        writeDigits(date.getYear(), 4);
+        buffer[position++] = '-';
+        writeDigits(date.getMonthValue(), 2);
+        buffer[position++] = '-';
+        writeDigits(date.getDayOfMonth(), 2);
+    }
+
+    private void writeDateTime(OffsetDateTime dateTime) {
+        writeDate(dateTime.toLocalDate());
+        buffer[position++] = 'T';
+        writeDigits(dateTime.getHour(), 2);
+        buffer[position++] = ':';
+        writeDigits(dateTime.getMinute(), 2);
+        buffer[position++] = ':';
+        writeDigits(dateTime.getSecond(), 2);
+        int nano = dateTime.getNano();
+        if (nano > 0) {
+            buffer[position++] = '.';
+            if (nano % 1_000_000 == 0) {
+                writeDigits(nano / 1_000_000, 3);
+            }
+            else if (nano % 1000 == 0) {
+                writeDigits(nano / 1000, 6);
+            }
+            else {
+                writeDigits(nano, 9);
+            }
+        }
+
+        int offsetSeconds = dateTime.getOffset().getTotalSeconds();
+        if (offsetSeconds == 0) {
+            buffer[position++] = 'Z';
+            return;
+        }
+        buffer[position++] = (byte) (offsetSeconds < 0 ? '-' : '+');
+        int absoluteOffset = Math.abs(offsetSeconds);
+        writeDigits(absoluteOffset / 3600, 2);
+        buffer[position++] = ':';
+        writeDigits(absoluteOffset / 60 % 60, 2);
+        if (absoluteOffset % 60 != 0) {
+            buffer[position++] = ':';
+            writeDigits(absoluteOffset % 60, 2);
+        }
+    }
+
+    private void writeDigits(int value, int count) {
+        for (int i = position + count - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += count;
+    }
+
+    private static boolean isFourDigitYear(int year) {
+        return year >= 0 && year <= 9999;
+    }
+
+    private void ensureCapacity(int byteCount) throws IOException {
+        if (position + byteCount > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            os.write(buffer, 0, position);
+            byteCount += position;
+            position = 0;
+        }
+    }
+}
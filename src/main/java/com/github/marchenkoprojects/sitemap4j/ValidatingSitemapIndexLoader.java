@@ -0,0 +1,25 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.time.temporal.Temporal;
+
+/**
+ * @author Oleg Marchenko
+ */
+class ValidatingSitemapIndexLoader extends ValidatingSitemapLoader {
+
+    ValidatingSitemapIndexLoader() {
+        super(new SitemapIndexValidator());
+    }
+
+    @Override
+    protected String getUrlTagName() {
+        return "sitemap";
+    }
+
+    @Override
+    protected SitemapIndex.Url buildUrl(String loc, Temporal lastmod, String changefreq, String priority) {
+        SitemapIndex.Url url = new SitemapIndex.Url(loc);
+        url.setLastmod(lastmod);
+        return url;
+    }
+}
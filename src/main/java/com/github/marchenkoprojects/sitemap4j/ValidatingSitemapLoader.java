@@ -0,0 +1,149 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.temporal.Temporal;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Loader that validates a sitemap file against its schema while loading it.
+ * The file is read, inflated and parsed only once: the SAX events of the parser pass through
+ * the schema validator and then build the URLs.
+ *
+ * <p> If the file does not pass the validation, the URLs that have been loaded before the error
+ * are removed from the store.
+ *
+ * @author Oleg Marchenko
+ */
+class ValidatingSitemapLoader extends SitemapLoader {
+    private static final ThreadLocal<SAXParserFactory> PARSER_FACTORIES = ThreadLocal.withInitial(() -> {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory;
+    });
+
+    private final SitemapValidator validator;
+
+    ValidatingSitemapLoader() {
+        this(new SitemapValidator());
+    }
+
+    ValidatingSitemapLoader(SitemapValidator validator) {
+        this.validator = validator;
+    }
+
+    @Override
+    void load(File file, UrlStore urls) {
+        ValidatorHandler validatorHandler = validator.getValidatorHandler();
+        try (InputStream is = openInputStream(file)) {
+            validatorHandler.setContentHandler(new UrlHandler(urls));
+
+            XMLReader xmlReader = PARSER_FACTORIES.get().newSAXParser().getXMLReader();
+            xmlReader.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            xmlReader.setContentHandler(validatorHandler);
+            xmlReader.parse(new InputSource(is));
+        }
+        catch (SAXException e) {
+            urls.clear();
+            throw new SitemapNotValidException(e);
+        }
+        catch (IOException | ParserConfigurationException e) {
+            throw new SitemapNotLoadedException(e);
+        }
+        finally {
+            validatorHandler.setContentHandler(null);
+        }
+    }
+
+    protected SitemapIndex.Url buildUrl(String loc, Temporal lastmod, String changefreq, String priority) {
+        Sitemap.Url url = new Sitemap.Url(loc);
+        url.setLastmod(lastmod);
+        if (nonNull(changefreq)) {
+            url.setChangefreq(ChangeFreq.valueOf(changefreq.toUpperCase()));
+        }
+        if (nonNull(priority)) {
+            url.setPriority(Float.parseFloat(priority));
+        }
+        return url;
+    }
+
+    /**
+     * Builds the URLs from the validated SAX events and puts them into the store.
+     */
+    private class UrlHandler extends DefaultHandler {
+        private final UrlStore urls;
+        private final StringBuilder text = new StringBuilder(256);
+        private boolean inField;
+
+        private String loc;
+        private Temporal lastmod;
+        private String changefreq;
+        private String priority;
+
+        UrlHandler(UrlStore urls) {
+            this.urls = urls;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (localName.equals(getUrlTagName())) {
+                loc = null;
+                lastmod = null;
+                changefreq = null;
+                priority = null;
+            }
+            else {
+                text.setLength(0);
+                inField = true;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inField) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (localName.equals(getUrlTagName())) {
+                urls.put(buildUrl(loc, lastmod, changefreq, priority));
+                return;
+            }
+            if (!inField) {
+                return;
+            }
+            inField = false;
+            String value = text.toString().trim();
+            if (value.isEmpty()) {
+                return;
+            }
+            switch (localName) {
+                case "loc":
+                    loc = value;
+                    break;
+                case "lastmod":
+                    lastmod = lastmodParser.parse(value);
+                    break;
+                case "changefreq":
+                    changefreq = value;
+                    break;
+                case "priority":
+                    priority = value;
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+/**
+ * This type is used to indicate how thoroughly a sitemap or sitemap index file is validated when it is loaded.
+ *
+ * @author Oleg Marchenko
+ * @see Sitemap#load(ValidationLevel)
+ */
+public enum ValidationLevel {
+    /**
+     * Loads the file without validation.
+     */
+    NONE,
+    /**
+     * Checks the limits of the sitemap protocol and the formats of the fields while the file is loaded,
+     * without a schema: the file size, the number of entries, the presence and length of every location,
+     * and the <tt>lastmod</tt>, <tt>changefreq</tt> and <tt>priority</tt> values.
+     */
+    STRUCTURAL,
+    /**
+     * Validates the file against the XML schema of the sitemap protocol while it is loaded,
+     * in addition to the structural checks.
+     */
+    XSD
+}
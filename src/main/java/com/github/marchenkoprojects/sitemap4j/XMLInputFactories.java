@@ -0,0 +1,95 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import javax.xml.stream.XMLInputFactory;
+import java.util.function.Consumer;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Per-thread cache of configured XML input factories used to load sitemaps,
+ * together with the settings of reading sitemap files.
+ *
+ * <p> Looking up and configuring a factory is much more expensive than parsing a small file,
+ * so every thread creates its factory once and reuses it for all loads.
+ * Each factory is coalescing, so a text value always arrives as a single event,
+ * and has DTDs and external entities disabled. A customizer can change the configuration;
+ * setting a new customizer discards the cached factories.
+ *
+ * @author Oleg Marchenko
+ * @see Sitemap#setXMLInputFactoryCustomizer(Consumer)
+ */
+final class XMLInputFactories {
+    /**
+     * Default size of the buffer used to read sitemap files.
+     */
+    static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Default size from which uncompressed sitemap files are mapped into memory instead of being read.
+     */
+    static final long DEFAULT_MAPPED_READ_THRESHOLD = 1024 * 1024;
+
+    private static final ThreadLocal<CachedFactory> FACTORIES = new ThreadLocal<>();
+
+    private static volatile Consumer<? super XMLInputFactory> customizer = factory -> {};
+    private static volatile int generation;
+    private static volatile int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+    private static volatile long mappedReadThreshold = DEFAULT_MAPPED_READ_THRESHOLD;
+
+    private XMLInputFactories() {
+    }
+
+    /**
+     * Returns the configured factory of the current thread.
+     *
+     * @return XML input factory
+     */
+    static XMLInputFactory get() {
+        CachedFactory cachedFactory = FACTORIES.get();
+        int currentGeneration = generation;
+        if (isNull(cachedFactory) || cachedFactory.generation != currentGeneration) {
+            cachedFactory = new CachedFactory(create(), currentGeneration);
+            FACTORIES.set(cachedFactory);
+        }
+        return cachedFactory.factory;
+    }
+
+    static synchronized void setCustomizer(Consumer<? super XMLInputFactory> customizer) {
+        XMLInputFactories.customizer = customizer;
+        generation++;
+    }
+
+    static int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    static void setReadBufferSize(int readBufferSize) {
+        XMLInputFactories.readBufferSize = readBufferSize;
+    }
+
+    static long getMappedReadThreshold() {
+        return mappedReadThreshold;
+    }
+
+    static void setMappedReadThreshold(long mappedReadThreshold) {
+        XMLInputFactories.mappedReadThreshold = mappedReadThreshold;
+    }
+
+    private static XMLInputFactory create() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        customizer.accept(factory);
+        return factory;
+    }
+
+    private static final class CachedFactory {
+        private final XMLInputFactory factory;
+        private final int generation;
+
+        CachedFactory(XMLInputFactory factory, int generation) {
+            this.factory = factory;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.marchenkoprojects.sitemap4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+/**
+ * Benchmark of the sitemap loaders on a sitemap file with 50,000 URLs:
+ * the XML parser, the fast loader and the fast loader with parallel parsing.
+ * Every loader is warmed up first; the average time of a load is printed for each of them.
+ *
+ * <p> Run with <code>java -cp target/classes:target/test-classes
+ * com.github.marchenkoprojects.sitemap4j.SitemapLoaderBenchmark [iterations]</code>.
+ *
+ * @author Oleg Marchenko
+ */
+public class SitemapLoaderBenchmark {
+    private static final int URL_COUNT = 50_000;
+    private static final int DEFAULT_ITERATIONS = 50;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        File file = createSitemapFile();
+        try {
+            System.out.printf("Sitemap file: %d URLs, %d bytes%n", URL_COUNT, file.length());
+            run("XML parser", new SitemapLoader(), file, iterations);
+            run("Fast loader", new FastSitemapLoader(false), file, iterations);
+            run("Fast loader, parallel", new FastSitemapLoader(true), file, iterations);
+        }
+        finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    private static void run(String name, SitemapLoader loader, File file, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            load(loader, file);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            load(loader, file);
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+        System.out.printf("%-24s %8.2f ms/load%n", name, millis);
+    }
+
+    private static void load(SitemapLoader loader, File file) {
+        UrlStore urls = new HeapUrlStore();
+        loader.load(file, urls);
+        if (urls.size() != URL_COUNT) {
+            throw new IllegalStateException("Loaded " + urls.size() + " URLs instead of " + URL_COUNT);
+        }
+    }
+
+    private static File createSitemapFile() throws IOException {
+        File file = File.createTempFile("sitemap-benchmark", ".xml");
+        Sitemap sitemap = new Sitemap(file, "http://example.com/");
+        LocalDate lastmod = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < URL_COUNT; i++) {
+            Sitemap.Url url = sitemap.createUrl("catalog/item-" + i + ".html");
+            url.setLastmod(lastmod.plusDays(i % 365));
+            url.setChangefreq(ChangeFreq.values()[i % ChangeFreq.values().length]);
+            url.setPriority((i % 11) / 10f);
+            sitemap.addUrl(url);
+        }
+        sitemap.flush();
+        return file;
+    }
+}